@@ -0,0 +1,32 @@
+package javaday;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all *Benchmark classes comparing {@link Java8} and {@link PriorJava8} implementations with GC profiler
+ * attached (allocation rate), once per thread count given as arguments (1 and 4 by default).
+ * Benchmark classes have to be compiled with JMH annotation processor on the classpath.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        String[] threadCounts = args.length > 0 ? args : new String[]{"1", "4"};
+        for (String threads : threadCounts) {
+            new Runner(new OptionsBuilder()
+                    .include("javaday\\..*Benchmark")
+                    .threads(Integer.parseInt(threads))
+                    .addProfiler(GCProfiler.class)
+                    .forks(1)
+                    .result("benchmarks-" + threads + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package javaday.lambdas;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Fork/join aggregation over index range [0, size) which, unlike fixed THRESHOLD of
+ * {@link ParalelismExample.SumOfWeightsSolver}, derives leaf size from input size and pool parallelism
+ * and stops splitting as soon as current worker already has enough surplus tasks queued for thieves.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ForkJoinRangeAggregator {
+
+    /**
+     * Roughly this many leaves per worker is enough to balance load without paying for too many tasks
+     */
+    private static final int LEAVES_PER_WORKER = 8;
+    private static final int MIN_LEAF_SIZE = 1024;
+    private static final int MAX_SURPLUS_QUEUED_TASKS = 3;
+
+    @FunctionalInterface
+    public interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    @FunctionalInterface
+    public interface LongRangeFunction {
+        long applyAsLong(int from, int to);
+    }
+
+    public static long sum(int size, LongRangeFunction leaf) {
+        return sum(ForkJoinPool.commonPool(), size, leaf);
+    }
+
+    public static long sum(ForkJoinPool pool, int size, LongRangeFunction leaf) {
+        return sum(pool, size, MIN_LEAF_SIZE, leaf);
+    }
+
+    /**
+     * @param minLeafSize lower bound of leaf size, small values suit leaves doing a lot of work per index
+     */
+    public static long sum(ForkJoinPool pool, int size, int minLeafSize, LongRangeFunction leaf) {
+        return aggregate(pool, size, minLeafSize, leaf::applyAsLong, Long::sum);
+    }
+
+    public static <R> R aggregate(ForkJoinPool pool, int size, RangeFunction<R> leaf, BinaryOperator<R> combiner) {
+        return aggregate(pool, size, MIN_LEAF_SIZE, leaf, combiner);
+    }
+
+    public static <R> R aggregate(ForkJoinPool pool, int size, int minLeafSize, RangeFunction<R> leaf, BinaryOperator<R> combiner) {
+        int leafSize = leafSize(size, pool.getParallelism(), minLeafSize);
+        RangeTask<R> task = new RangeTask<>(0, size, leafSize, leaf, combiner);
+        return ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
+
+    static int leafSize(int size, int parallelism, int minLeafSize) {
+        return Math.max(Math.max(1, minLeafSize), size / (Math.max(1, parallelism) * LEAVES_PER_WORKER));
+    }
+
+    private static class RangeTask<R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final RangeFunction<R> leaf;
+        private final BinaryOperator<R> combiner;
+
+        RangeTask(int from, int to, int leafSize, RangeFunction<R> leaf, BinaryOperator<R> combiner) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.leaf = leaf;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= leafSize || getSurplusQueuedTaskCount() > MAX_SURPLUS_QUEUED_TASKS) {
+                return leaf.apply(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<R> left = new RangeTask<>(from, middle, leafSize, leaf, combiner);
+            left.fork();
+            R right = new RangeTask<>(middle, to, leafSize, leaf, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    @Test
+    public void shouldSumRangeOnCallerSuppliedPoolWithoutOverflow() throws Exception {
+        int[] values = IntStream.range(0, 1_000_000).map(i -> Integer.MAX_VALUE).toArray();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            long sum = sum(pool, values.length, (from, to) -> {
+                long s = 0;
+                for (int i = from; i < to; i++) {
+                    s += values[i];
+                }
+                return s;
+            });
+            assertThat(sum, is((long) Integer.MAX_VALUE * values.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldPickLeafSizeFromInputSizeAndParallelism() throws Exception {
+        assertThat(leafSize(100, 8, MIN_LEAF_SIZE), is(MIN_LEAF_SIZE));
+        assertThat(leafSize(64_000_000, 8, MIN_LEAF_SIZE), is(1_000_000));
+        assertThat(leafSize(100, 8, 1), is(1));
+    }
+}
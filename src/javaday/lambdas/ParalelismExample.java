@@ -4,7 +4,11 @@ import javaday.Java8;
 import javaday.PriorJava8;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 import java.util.stream.IntStream;
@@ -42,6 +46,24 @@ public class ParalelismExample {
         return task.sum;
     }
 
+    /**
+     * Same fork/join idea without hard-coded threshold: index ranges instead of subList views and any pool you like.
+     * Sums into long, so total doesn't overflow, lists without random access are copied first.
+     */
+    public static long calcSumOfWeights(List<Shape> shapes, ForkJoinPool pool) {
+        List<Shape> indexed = shapes instanceof RandomAccess ? shapes : new ArrayList<>(shapes);
+        return ForkJoinRangeAggregator.sum(pool, indexed.size(), (from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                Shape shape = indexed.get(i);
+                if (shape.color == BLUE) {
+                    sum += shape.getWeight();
+                }
+            }
+            return sum;
+        });
+    }
+
     static class SumOfWeightsSolver extends RecursiveAction{
 
         private static final int THRESHOLD = 100;
@@ -109,6 +131,19 @@ public class ParalelismExample {
         assertThat(calcSumOfWeightsBeforeJava8(shapes), is(20));
     }
 
+    @Test
+    public void testCalculatingSumOfWeightsUsingAdaptiveForkJoin() throws Exception {
+        List<Shape> shapes = generateListOfShapes();
+        assertThat(calcSumOfWeights(shapes, ForkJoinPool.commonPool()), is(20L));
+        assertThat(calcSumOfWeights(new LinkedList<>(shapes), ForkJoinPool.commonPool()), is(20L));
+    }
+
+    @Test
+    public void testSumOfWeightsBeyondIntRangeUsingAdaptiveForkJoin() throws Exception {
+        List<Shape> shapes = Collections.nCopies(1000, new Shape(Integer.MAX_VALUE, BLUE));
+        assertThat(calcSumOfWeights(shapes, ForkJoinPool.commonPool()), is(1000L * Integer.MAX_VALUE));
+    }
+
     private List<Shape> generateListOfShapes() {
         return IntStream.range(0,10).mapToObj(i -> new Shape(i, ((i & 1) == 0) ? BLUE : RED)).collect(toList());
     }
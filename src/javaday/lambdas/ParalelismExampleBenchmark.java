@@ -0,0 +1,84 @@
+package javaday.lambdas;
+
+import javaday.lambdas.ParalelismExample.Shape;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static javaday.lambdas.ParalelismExample.Shape.Color.BLUE;
+import static javaday.lambdas.ParalelismExample.Shape.Color.RED;
+
+/**
+ * {@link ParalelismExample#calcSumOfWeights(List)} vs {@link ParalelismExample#calcSumOfWeightsBeforeJava8(List)}
+ * over growing lists and fork/join pools of different parallelism.
+ * Parallel stream is started from inside the pool so it runs on its workers instead of common pool,
+ * while the prior Java 8 version always invokes on common pool as it is written, so it only depends on
+ * {@link Shapes} state and is not repeated for every parallelism.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParalelismExampleBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shapes {
+
+        @Param({"1000", "100000", "10000000"})
+        public int size;
+
+        List<Shape> shapes;
+        ShapeBatch batch;
+
+        @Setup
+        public void setUp() {
+            shapes = IntStream.range(0, size)
+                    .mapToObj(i -> new Shape(i % 100, ((i & 1) == 0) ? BLUE : RED))
+                    .collect(toList());
+            batch = ShapeBatch.of(shapes);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+
+        @Param({"1", "4", "16"})
+        public int parallelism;
+
+        ForkJoinPool pool;
+
+        @Setup
+        public void setUp() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int calcSumOfWeights(Shapes shapes, Pool pool) {
+        return pool.pool.submit(() -> ParalelismExample.calcSumOfWeights(shapes.shapes)).join();
+    }
+
+    @Benchmark
+    public int calcSumOfWeightsBeforeJava8(Shapes shapes) {
+        return ParalelismExample.calcSumOfWeightsBeforeJava8(shapes.shapes);
+    }
+
+    @Benchmark
+    public long calcSumOfWeightsAdaptiveForkJoin(Shapes shapes, Pool pool) {
+        return ParalelismExample.calcSumOfWeights(shapes.shapes, pool.pool);
+    }
+
+    @Benchmark
+    public long shapeBatchForkJoinSumOfWeights(Shapes shapes, Pool pool) {
+        return shapes.batch.forkJoinSumOfWeights(BLUE, pool.pool);
+    }
+}
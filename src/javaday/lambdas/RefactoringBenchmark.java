@@ -0,0 +1,64 @@
+package javaday.lambdas;
+
+import javaday.lambdas.Refactoring.LongTrackFinder;
+import javaday.lambdas.domain.Album;
+import javaday.lambdas.domain.Track;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Every step of {@link Refactoring} from imperative Step0 to fully functional Step4 on the same albums.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RefactoringBenchmark {
+
+    private static final int TRACKS_PER_ALBUM = 10;
+
+    @Param({"10", "1000", "100000"})
+    public int albumsCount;
+
+    @Param({"Step0", "Step1", "Step2", "Step3", "Step4"})
+    public String step;
+
+    private List<Album> albums;
+    private LongTrackFinder finder;
+
+    @Setup
+    public void setUp() {
+        albums = IntStream.range(0, albumsCount)
+                .mapToObj(i -> new Album("Album " + i,
+                        IntStream.range(0, TRACKS_PER_ALBUM)
+                                .mapToObj(t -> new Track("Track " + i + "-" + t, (i * 7 + t * 13) % 120))
+                                .collect(toList()),
+                        Collections.emptyList()))
+                .collect(toList());
+        finder = finder(step);
+    }
+
+    private static LongTrackFinder finder(String step) {
+        switch (step) {
+            case "Step0": return new Refactoring.Step0();
+            case "Step1": return new Refactoring.Step1();
+            case "Step2": return new Refactoring.Step2();
+            case "Step3": return new Refactoring.Step3();
+            case "Step4": return new Refactoring.Step4();
+            default: throw new IllegalArgumentException("Unknown step: " + step);
+        }
+    }
+
+    @Benchmark
+    public Set<String> findLongTracks() {
+        return finder.findLongTracks(albums);
+    }
+}
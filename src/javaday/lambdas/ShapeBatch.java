@@ -0,0 +1,93 @@
+package javaday.lambdas;
+
+import javaday.lambdas.ParalelismExample.Shape;
+import javaday.lambdas.ParalelismExample.Shape.Color;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Struct of arrays alternative to List&lt;Shape&gt;: weights live in int[] and colors in byte[] of ordinals,
+ * so summing weights streams through two flat arrays instead of chasing Shape and Color pointers.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ShapeBatch {
+
+    private static final Color[] COLORS = Color.values();
+
+    private int size;
+    private int[] weights;
+    private byte[] colors;
+
+    public ShapeBatch(int capacity) {
+        weights = new int[capacity];
+        colors = new byte[capacity];
+    }
+
+    public static ShapeBatch of(List<Shape> shapes) {
+        ShapeBatch batch = new ShapeBatch(shapes.size());
+        for (Shape shape : shapes) {
+            batch.add(shape.getWeight(), shape.getColor());
+        }
+        return batch;
+    }
+
+    public void add(int weight, Color color) {
+        if (size == weights.length) {
+            int capacity = Math.max(16, size * 2);
+            weights = Arrays.copyOf(weights, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+        }
+        weights[size] = weight;
+        colors[size] = (byte) color.ordinal();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int weight(int index) {
+        return weights[index];
+    }
+
+    public Color color(int index) {
+        return COLORS[colors[index]];
+    }
+
+    public long sumOfWeights(Color color) {
+        return sumOfWeights(color, 0, size);
+    }
+
+    public long parallelSumOfWeights(Color color) {
+        byte ordinal = (byte) color.ordinal();
+        return IntStream.range(0, size)
+                .parallel()
+                .filter(i -> colors[i] == ordinal)
+                .mapToLong(i -> weights[i])
+                .sum();
+    }
+
+    public long forkJoinSumOfWeights(Color color) {
+        return forkJoinSumOfWeights(color, ForkJoinPool.commonPool());
+    }
+
+    public long forkJoinSumOfWeights(Color color, ForkJoinPool pool) {
+        return ForkJoinRangeAggregator.sum(pool, size, (from, to) -> sumOfWeights(color, from, to));
+    }
+
+    /**
+     * Branch free loop over [from, to) which JIT is able to unroll and vectorize
+     */
+    long sumOfWeights(Color color, int from, int to) {
+        byte ordinal = (byte) color.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += colors[i] == ordinal ? weights[i] : 0;
+        }
+        return sum;
+    }
+}
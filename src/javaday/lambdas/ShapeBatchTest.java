@@ -0,0 +1,33 @@
+package javaday.lambdas;
+
+import javaday.lambdas.ParalelismExample.Shape;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static javaday.lambdas.ParalelismExample.Shape.Color.BLUE;
+import static javaday.lambdas.ParalelismExample.Shape.Color.RED;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class ShapeBatchTest {
+
+    @Test
+    public void shouldSumBlueWeightsSameWayAsListOfShapes() throws Exception {
+        List<Shape> shapes = IntStream.range(0, 300_000)
+                .mapToObj(i -> new Shape(i % 1000, ((i & 1) == 0) ? BLUE : RED))
+                .collect(toList());
+        ShapeBatch batch = ShapeBatch.of(shapes);
+        long expected = shapes.stream().filter(s -> s.getColor() == BLUE).mapToLong(Shape::getWeight).sum();
+
+        assertThat(batch.sumOfWeights(BLUE), is(expected));
+        assertThat(batch.parallelSumOfWeights(BLUE), is(expected));
+        assertThat(batch.forkJoinSumOfWeights(BLUE), is(expected));
+        assertThat(batch.color(1), is(RED));
+    }
+}
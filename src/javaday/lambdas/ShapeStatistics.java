@@ -0,0 +1,140 @@
+package javaday.lambdas;
+
+import javaday.lambdas.ParalelismExample.Shape;
+import javaday.lambdas.ParalelismExample.Shape.Color;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static javaday.lambdas.ParalelismExample.Shape.Color.BLUE;
+import static javaday.lambdas.ParalelismExample.Shape.Color.RED;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Count, sum, min, max and mean of weights per {@link Color} gathered in one pass.
+ * Accumulators are plain arrays indexed by color ordinal and can be merged, so the same
+ * class works as a parallel stream {@link Collector} and as a fork/join leaf result.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ShapeStatistics {
+
+    private static final Color[] COLORS = Color.values();
+
+    private final long[] count = new long[COLORS.length];
+    private final long[] sum = new long[COLORS.length];
+    private final int[] min = new int[COLORS.length];
+    private final int[] max = new int[COLORS.length];
+
+    public ShapeStatistics() {
+        for (int i = 0; i < COLORS.length; i++) {
+            min[i] = Integer.MAX_VALUE;
+            max[i] = Integer.MIN_VALUE;
+        }
+    }
+
+    public static Collector<Shape, ?, ShapeStatistics> collector() {
+        return Collector.of(ShapeStatistics::new, ShapeStatistics::accept, ShapeStatistics::combine,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    public static ShapeStatistics of(ShapeBatch batch, ForkJoinPool pool) {
+        return ForkJoinRangeAggregator.aggregate(pool, batch.size(), (from, to) -> {
+            ShapeStatistics statistics = new ShapeStatistics();
+            for (int i = from; i < to; i++) {
+                statistics.accept(batch.weight(i), batch.color(i));
+            }
+            return statistics;
+        }, ShapeStatistics::combine);
+    }
+
+    public void accept(Shape shape) {
+        accept(shape.getWeight(), shape.getColor());
+    }
+
+    public void accept(int weight, Color color) {
+        int i = color.ordinal();
+        count[i]++;
+        sum[i] += weight;
+        min[i] = Math.min(min[i], weight);
+        max[i] = Math.max(max[i], weight);
+    }
+
+    public ShapeStatistics combine(ShapeStatistics other) {
+        for (int i = 0; i < COLORS.length; i++) {
+            count[i] += other.count[i];
+            sum[i] += other.sum[i];
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+        }
+        return this;
+    }
+
+    public long getCount(Color color) {
+        return count[color.ordinal()];
+    }
+
+    public long getSum(Color color) {
+        return sum[color.ordinal()];
+    }
+
+    public int getMin(Color color) {
+        return min[color.ordinal()];
+    }
+
+    public int getMax(Color color) {
+        return max[color.ordinal()];
+    }
+
+    public double getAverage(Color color) {
+        int i = color.ordinal();
+        return count[i] > 0 ? (double) sum[i] / count[i] : 0.0d;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(getClass().getSimpleName()).append('{');
+        for (Color color : COLORS) {
+            if (color.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(color).append("={count=").append(getCount(color))
+                    .append(", sum=").append(getSum(color))
+                    .append(", min=").append(getMin(color))
+                    .append(", average=").append(getAverage(color))
+                    .append(", max=").append(getMax(color)).append('}');
+        }
+        return builder.append('}').toString();
+    }
+
+    @Test
+    public void shouldMatchLongSummaryStatisticsPerColorInOnePass() throws Exception {
+        List<Shape> shapes = IntStream.range(0, 100_000)
+                .mapToObj(i -> new Shape((i * 31) % 977, (i % 3 == 0) ? BLUE : RED))
+                .collect(toList());
+
+        ShapeStatistics streamed = shapes.parallelStream().collect(collector());
+        ShapeStatistics forkJoined = of(ShapeBatch.of(shapes), ForkJoinPool.commonPool());
+
+        for (Color color : COLORS) {
+            LongSummaryStatistics expected = shapes.stream()
+                    .filter(s -> s.getColor() == color)
+                    .mapToLong(Shape::getWeight)
+                    .summaryStatistics();
+            for (ShapeStatistics actual : new ShapeStatistics[]{streamed, forkJoined}) {
+                assertThat(actual.getCount(color), is(expected.getCount()));
+                assertThat(actual.getSum(color), is(expected.getSum()));
+                assertThat((long) actual.getMin(color), is(expected.getMin()));
+                assertThat((long) actual.getMax(color), is(expected.getMax()));
+                assertEquals(expected.getAverage(), actual.getAverage(color), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package javaday.lambdas.niceties;
+
+import javaday.lambdas.domain.Artist;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Pre Java 8 {@link CollectionsOutputFormat#printArtists(List)}, its refactoring steps and final
+ * {@link CollectionsOutputFormat#printArtistsInJava8(List)} over growing lists of artists.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollectionsOutputFormatBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<Artist> artists;
+
+    @Setup
+    public void setUp() {
+        artists = IntStream.range(0, size)
+                .mapToObj(i -> new Artist("Artist " + i, "UK"))
+                .collect(toList());
+    }
+
+    @Benchmark
+    public String printArtists() {
+        return CollectionsOutputFormat.printArtists(artists);
+    }
+
+    @Benchmark
+    public String printArtistsRefactor1() {
+        return CollectionsOutputFormat.printArtistsRefactor1(artists);
+    }
+
+    @Benchmark
+    public String printArtistsRefactor2() {
+        return CollectionsOutputFormat.printArtistsRefactor2(artists);
+    }
+
+    @Benchmark
+    public String printArtistsRefactor3() {
+        return CollectionsOutputFormat.printArtistsRefactor3(artists);
+    }
+
+    @Benchmark
+    public String printArtistsRefactor4() {
+        return CollectionsOutputFormat.printArtistsRefactor4(artists);
+    }
+
+    @Benchmark
+    public String printArtistsRefactor5() {
+        return CollectionsOutputFormat.printArtistsRefactor5(artists);
+    }
+
+    @Benchmark
+    public String printArtistsInJava8() {
+        return CollectionsOutputFormat.printArtistsInJava8(artists);
+    }
+}
@@ -0,0 +1,233 @@
+package javaday.lambdas.usage;
+
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ReportSink} encoding rows straight into one large reusable byte buffer which is flushed
+ * to the channel only when full, so report is written at disk bandwidth rather than console speed.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class BufferedReportSink implements ReportSink {
+
+    public enum Format {TEXT, CSV, JSON}
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    static final String DOUBLE_LINE = "===========================================================================";
+    static final String SINGLE_LINE = "---------------------------------------------------------------------------";
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private String section;
+    private boolean firstSection = true;
+    private boolean firstRow;
+
+    public BufferedReportSink(WritableByteChannel channel, Format format, boolean closeChannel) {
+        this.channel = channel;
+        this.format = format;
+        this.closeChannel = closeChannel;
+    }
+
+    public static BufferedReportSink toFile(Path file, Format format) throws IOException {
+        return new BufferedReportSink(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), format, true);
+    }
+
+    /**
+     * Writes to stdout bypassing synchronized {@link System#out}, stdout itself is left open on close.
+     */
+    public static BufferedReportSink toConsole() {
+        return new BufferedReportSink(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), Format.TEXT, false);
+    }
+
+    @Override
+    public void beginSection(String name) throws IOException {
+        section = name;
+        firstRow = true;
+        switch (format) {
+            case TEXT:
+                line(DOUBLE_LINE);
+                put(name).put(" bookNames:").newLine();
+                line(DOUBLE_LINE);
+                break;
+            case JSON:
+                put(firstSection ? "{" : ",").putJson(name).put(":{\"rows\":[");
+                break;
+            default:
+                break;
+        }
+        firstSection = false;
+    }
+
+    @Override
+    public void row(CharSequence... fields) throws IOException {
+        switch (format) {
+            case TEXT:
+                putJoined(fields).newLine();
+                break;
+            case CSV:
+                putCsv(section.toLowerCase());
+                for (CharSequence field : fields) {
+                    put(",").putCsv(field);
+                }
+                newLine();
+                break;
+            case JSON:
+                put(firstRow ? "[" : ",[");
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) {
+                        put(",");
+                    }
+                    putJson(fields[i]);
+                }
+                put("]");
+                break;
+        }
+        firstRow = false;
+    }
+
+    @Override
+    public void endSection(long total) throws IOException {
+        switch (format) {
+            case TEXT:
+                line(SINGLE_LINE);
+                put("Total: ").put(Long.toString(total)).newLine();
+                break;
+            case JSON:
+                put("],\"total\":").put(Long.toString(total)).put("}");
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (format == Format.JSON) {
+            put(firstSection ? "{}" : "}").newLine();
+        }
+        flush();
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private BufferedReportSink line(String text) throws IOException {
+        return put(text).newLine();
+    }
+
+    private BufferedReportSink newLine() throws IOException {
+        return put("\n");
+    }
+
+    private BufferedReportSink putJoined(CharSequence[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                put(",");
+            }
+            put(fields[i]);
+        }
+        return this;
+    }
+
+    /**
+     * RFC 4180 field: quoted when it holds a comma, quote or line break, with quotes doubled
+     */
+    private BufferedReportSink putCsv(CharSequence text) throws IOException {
+        if (text == null) {
+            return put(null);
+        }
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return put(text);
+        }
+        put("\"");
+        for (int i = 0; i < text.length(); ) {
+            if (text.charAt(i) == '"') {
+                putByte('"');
+            }
+            i += putChar(text, i);
+        }
+        return put("\"");
+    }
+
+    private BufferedReportSink putJson(CharSequence text) throws IOException {
+        put("\"");
+        for (int i = 0; i < text.length(); ) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                putByte('\\').putByte(c);
+                i++;
+            } else if (c < 0x20) {
+                put(String.format("\\u%04x", (int) c));
+                i++;
+            } else {
+                i += putChar(text, i);
+            }
+        }
+        return put("\"");
+    }
+
+    private BufferedReportSink put(CharSequence text) throws IOException {
+        if (text == null) {
+            text = "null";
+        }
+        for (int i = 0; i < text.length(); ) {
+            i += putChar(text, i);
+        }
+        return this;
+    }
+
+    /**
+     * UTF-8 encodes a single code point starting at index, unpaired surrogate is written as '?' like String.getBytes does
+     *
+     * @return number of chars consumed
+     */
+    private int putChar(CharSequence text, int index) throws IOException {
+        int c = Character.codePointAt(text, index);
+        if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            putByte('?');
+        } else if (c < 0x80) {
+            putByte(c);
+        } else if (c < 0x800) {
+            putByte(0xC0 | (c >> 6)).putByte(0x80 | (c & 0x3F));
+        } else if (c < 0x10000) {
+            putByte(0xE0 | (c >> 12)).putByte(0x80 | ((c >> 6) & 0x3F)).putByte(0x80 | (c & 0x3F));
+        } else {
+            putByte(0xF0 | (c >> 18)).putByte(0x80 | ((c >> 12) & 0x3F))
+                    .putByte(0x80 | ((c >> 6) & 0x3F)).putByte(0x80 | (c & 0x3F));
+        }
+        return Character.charCount(c);
+    }
+
+    private BufferedReportSink putByte(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) b);
+        return this;
+    }
+}
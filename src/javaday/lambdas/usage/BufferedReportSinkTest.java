@@ -0,0 +1,71 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.BufferedReportSink.Format;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class BufferedReportSinkTest {
+
+    @Test
+    public void shouldWriteSameTextReportAsConsoleOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BufferedReportSink sink = new BufferedReportSink(Channels.newChannel(out), Format.TEXT, true)) {
+            sink.beginSection("Expired");
+            sink.row("ABC");
+            sink.endSection(1);
+        }
+        assertThat(out.toString("UTF-8"), is(BufferedReportSink.DOUBLE_LINE + "\nExpired bookNames:\n" + BufferedReportSink.DOUBLE_LINE + "\nABC\n" + BufferedReportSink.SINGLE_LINE + "\nTotal: 1\n"));
+    }
+
+    @Test
+    public void shouldWriteCsvAndJsonReports() throws Exception {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        for (Format format : new Format[]{Format.CSV, Format.JSON}) {
+            try (BufferedReportSink sink = new BufferedReportSink(Channels.newChannel(format == Format.CSV ? csv : json), format, true)) {
+                sink.beginSection("Missing");
+                sink.row("FOO", "2015-06-10");
+                sink.row("\u00dcn\u00efcode \"quoted\"", "2015-06-11");
+                sink.endSection(2);
+                sink.beginSection("Active");
+                sink.row("BAR", "[DOMAIN1, DOMAIN2]", "2015-06-12");
+                sink.row("multi\nline", "2015-06-13");
+                sink.endSection(2);
+                sink.beginSection("Expired");
+                sink.endSection(0);
+            }
+        }
+        assertThat(csv.toString("UTF-8"), is("missing,FOO,2015-06-10\n" +
+                "missing,\"\u00dcn\u00efcode \"\"quoted\"\"\",2015-06-11\n" +
+                "active,BAR,\"[DOMAIN1, DOMAIN2]\",2015-06-12\n" +
+                "active,\"multi\nline\",2015-06-13\n"));
+        assertThat(new String(json.toByteArray(), StandardCharsets.UTF_8),
+                is("{\"Missing\":{\"rows\":[[\"FOO\",\"2015-06-10\"],[\"\u00dcn\u00efcode \\\"quoted\\\"\",\"2015-06-11\"]],\"total\":2}," +
+                        "\"Active\":{\"rows\":[[\"BAR\",\"[DOMAIN1, DOMAIN2]\",\"2015-06-12\"],[\"multi\\u000aline\",\"2015-06-13\"]],\"total\":2}," +
+                        "\"Expired\":{\"rows\":[],\"total\":0}}\n"));
+    }
+
+    @Test
+    public void shouldKeepCharactersAfterUnpairedSurrogates() throws Exception {
+        for (Format format : Format.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (BufferedReportSink sink = new BufferedReportSink(Channels.newChannel(out), format, true)) {
+                sink.beginSection("Missing");
+                sink.row("a\uD800b", "\uDC00c,\uD83D\uDE00d\uD800");
+                sink.endSection(1);
+            }
+            String report = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            assertThat(format + " report " + report, report.contains("a?b"), is(true));
+            assertThat(format + " report " + report, report.contains("?c,\uD83D\uDE00d?"), is(true));
+        }
+    }
+}
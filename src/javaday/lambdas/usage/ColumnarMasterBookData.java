@@ -0,0 +1,273 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.BookInfo;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Master book data kept in primitive columns instead of {@link BookInfo} objects:
+ * ids in int[], expired flags in a bitset and names/sources dictionary encoded into int codes.
+ * Rows of the same name are chained through an int[] so lookups don't need per-name lists.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ColumnarMasterBookData {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_ROW = -1;
+
+    private final Dictionary names;
+    private final Dictionary sources;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] sourceCodes = new int[INITIAL_CAPACITY];
+    private int[] nextRowOfSameName = new int[INITIAL_CAPACITY];
+    private final BitSet expired;
+
+    private int[] firstRowOfName = new int[INITIAL_CAPACITY];
+    private int[] lastRowOfName = new int[INITIAL_CAPACITY];
+
+    public ColumnarMasterBookData() {
+        this.names = new Dictionary();
+        this.sources = new Dictionary();
+        this.expired = new BitSet();
+    }
+
+    /**
+     * Takes over already built columns, used to restore {@link MasterBookSnapshot} without re-adding every row.
+     */
+    ColumnarMasterBookData(Dictionary names, Dictionary sources, int size, int[] ids, int[] sourceCodes,
+                           int[] nextRowOfSameName, BitSet expired, int[] firstRowOfName, int[] lastRowOfName) {
+        this.names = names;
+        this.sources = sources;
+        this.size = size;
+        this.ids = ids;
+        this.sourceCodes = sourceCodes;
+        this.nextRowOfSameName = nextRowOfSameName;
+        this.expired = expired;
+        this.firstRowOfName = firstRowOfName;
+        this.lastRowOfName = lastRowOfName;
+    }
+
+    public static ColumnarMasterBookData load(Path masterFile) throws IOException {
+        ColumnarMasterBookData data = new ColumnarMasterBookData();
+        MappedBookCsvReader.readMasterData(masterFile, data::add);
+        return data;
+    }
+
+    public void add(BookInfo book) {
+        add(book.id, book.name, book.source, book.isExpired);
+    }
+
+    public void add(int id, String name, String source, boolean isExpired) {
+        ensureRowCapacity(size + 1);
+        int knownNames = names.size();
+        int nameCode = names.encode(name);
+        ensureNameCapacity(nameCode + 1);
+
+        int row = size++;
+        ids[row] = id;
+        sourceCodes[row] = sources.encode(source);
+        nextRowOfSameName[row] = NO_ROW;
+        expired.set(row, isExpired);
+
+        if (nameCode == knownNames) {
+            firstRowOfName[nameCode] = row;
+        } else {
+            nextRowOfSameName[lastRowOfName[nameCode]] = row;
+        }
+        lastRowOfName[nameCode] = row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String name) {
+        return names.codeOf(name) != Dictionary.UNKNOWN;
+    }
+
+    /**
+     * Same question {@link ProcessingCsvFiles} asks: are all master records of the name expired?
+     * Unknown names are reported as not expired, use {@link #contains(String)} to tell them apart.
+     */
+    public boolean isExpired(String name) {
+        int nameCode = names.codeOf(name);
+        if (nameCode == Dictionary.UNKNOWN) {
+            return false;
+        }
+        for (int row = firstRowOfName[nameCode]; row != NO_ROW; row = nextRowOfSameName[row]) {
+            if (!expired.get(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sources of not expired records in load order.
+     */
+    public List<String> activeSources(String name) {
+        int nameCode = names.codeOf(name);
+        if (nameCode == Dictionary.UNKNOWN) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (int row = firstRowOfName[nameCode]; row != NO_ROW; row = nextRowOfSameName[row]) {
+            if (!expired.get(row)) {
+                result.add(sources.decode(sourceCodes[row]));
+            }
+        }
+        return result;
+    }
+
+    public int[] ids(String name) {
+        int nameCode = names.codeOf(name);
+        if (nameCode == Dictionary.UNKNOWN) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int row = firstRowOfName[nameCode]; row != NO_ROW; row = nextRowOfSameName[row]) {
+            count++;
+        }
+        int[] result = new int[count];
+        int i = 0;
+        for (int row = firstRowOfName[nameCode]; row != NO_ROW; row = nextRowOfSameName[row]) {
+            result[i++] = ids[row];
+        }
+        return result;
+    }
+
+    /*
+     * Columns below are exposed as they are for MasterBookSnapshot, only first size() rows
+     * and first names().size() names are meaningful.
+     */
+
+    int[] idColumn() {
+        return ids;
+    }
+
+    int[] sourceCodeColumn() {
+        return sourceCodes;
+    }
+
+    int[] nextRowOfSameNameColumn() {
+        return nextRowOfSameName;
+    }
+
+    BitSet expiredColumn() {
+        return expired;
+    }
+
+    int[] firstRowOfNameColumn() {
+        return firstRowOfName;
+    }
+
+    int[] lastRowOfNameColumn() {
+        return lastRowOfName;
+    }
+
+    Dictionary names() {
+        return names;
+    }
+
+    Dictionary sources() {
+        return sources;
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int newCapacity = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newCapacity);
+            sourceCodes = Arrays.copyOf(sourceCodes, newCapacity);
+            nextRowOfSameName = Arrays.copyOf(nextRowOfSameName, newCapacity);
+        }
+    }
+
+    private void ensureNameCapacity(int capacity) {
+        if (capacity > firstRowOfName.length) {
+            int newCapacity = Math.max(capacity, firstRowOfName.length * 2);
+            firstRowOfName = Arrays.copyOf(firstRowOfName, newCapacity);
+            lastRowOfName = Arrays.copyOf(lastRowOfName, newCapacity);
+        }
+    }
+
+    /**
+     * Maps every distinct string to a dense int code.
+     */
+    static class Dictionary {
+
+        static final int UNKNOWN = -1;
+
+        private final Map<String, Integer> codes;
+        private final List<String> values;
+
+        Dictionary() {
+            codes = new HashMap<>();
+            values = new ArrayList<>();
+        }
+
+        /**
+         * Dictionary where code of every value is its index
+         */
+        Dictionary(String[] values) {
+            this.codes = new HashMap<>(values.length * 4 / 3 + 1);
+            this.values = new ArrayList<>(Arrays.asList(values));
+            for (int code = 0; code < values.length; code++) {
+                codes.put(values[code], code);
+            }
+        }
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code == null ? UNKNOWN : code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    @Test
+    public void shouldAnswerSameQuestionsAsBookInfoLists() throws Exception {
+        ColumnarMasterBookData data = new ColumnarMasterBookData();
+        Stream.of(
+                "111,ABC,DOMAIN1,1",
+                "112,XYZ,DOMAIN1,0",
+                "113,BLA,DOMAIN2,1",
+                "114,ABC,DOMAIN2,1",
+                "115,XYZ,DOMAIN2,0")
+                .map(ProcessingCsvFiles::toBookInfo)
+                .forEach(data::add);
+
+        assertThat(data.size(), is(5));
+        assertThat(data.contains("FOO"), is(false));
+        assertThat(data.isExpired("ABC"), is(true));
+        assertThat(data.isExpired("XYZ"), is(false));
+        assertThat(data.activeSources("XYZ"), is(Arrays.asList("DOMAIN1", "DOMAIN2")));
+        assertThat(data.activeSources("ABC"), is(Collections.<String>emptyList()));
+        assertThat(Arrays.toString(data.ids("ABC")), is("[111, 114]"));
+    }
+}
@@ -0,0 +1,423 @@
+package javaday.lambdas.usage;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Drop-in replacement of .distinct().sorted(order) stage for vocabularies bigger than heap.
+ * Words are collected into sorted de-duplicated run while its estimated size fits into memory budget,
+ * then the run is spilled into a temporary file. Resulting stream lazily k-way merges all runs,
+ * skipping words repeated across runs, so ordering and distinctness are the same as in memory.
+ * At most {@link #MERGE_FAN_IN} runs are open at once: if there are more, groups of runs are merged into
+ * bigger runs first, and read buffers are sized so that all open runs together fit into memory budget.
+ * Input is only read when the first word is requested. Close resulting stream (try-with-resources)
+ * to remove temporary files if it is not read till the end, closing it closes input stream as well.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ExternalSort {
+
+    public static final Comparator<String> BY_LENGTH_THEN_ALPHABETICALLY =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * Rough heap cost of a String in a TreeSet entry on top of its characters
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    static final int MERGE_FAN_IN = 64;
+    private static final int MIN_READ_BUFFER = 4 * 1024;
+    private static final int MAX_READ_BUFFER = 64 * 1024;
+
+    public static Stream<String> sortedDistinct(Stream<String> words, Comparator<String> order, long memoryBudget) {
+        return sortedDistinct(words, order, memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public static Stream<String> sortedDistinct(Stream<String> words, Comparator<String> order, long memoryBudget, Path tempDir) {
+        return sortedDistinct(words, order, memoryBudget, tempDir, MERGE_FAN_IN);
+    }
+
+    static Stream<String> sortedDistinct(Stream<String> words, Comparator<String> order, long memoryBudget, Path tempDir, int fanIn) {
+        SortedRunsSpliterator sorted = new SortedRunsSpliterator(words, order, memoryBudget, tempDir, fanIn);
+        return StreamSupport.stream(sorted, false).onClose(() -> {
+            try {
+                sorted.close();
+            } finally {
+                words.close();
+            }
+        });
+    }
+
+    /**
+     * Reports its order through {@link #getComparator()}, so a later .sorted() with another order still sorts.
+     * Nothing is read from the input until the first element is requested.
+     */
+    private static final class SortedRunsSpliterator implements Spliterator<String>, Closeable {
+
+        private final Stream<String> words;
+        private final Comparator<String> order;
+        private final long memoryBudget;
+        private final Path tempDir;
+        private final int fanIn;
+        private final int readBuffer;
+        private Iterator<String> sorted;
+        private MergingIterator merge;
+
+        SortedRunsSpliterator(Stream<String> words, Comparator<String> order, long memoryBudget, Path tempDir, int fanIn) {
+            this.words = words;
+            this.order = order;
+            this.memoryBudget = memoryBudget;
+            this.tempDir = tempDir;
+            this.fanIn = fanIn;
+            this.readBuffer = (int) Math.max(MIN_READ_BUFFER, Math.min(MAX_READ_BUFFER, memoryBudget / fanIn));
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (sorted == null) {
+                sorted = sort();
+            }
+            if (!sorted.hasNext()) {
+                return false;
+            }
+            action.accept(sorted.next());
+            return true;
+        }
+
+        private Iterator<String> sort() {
+            List<Path> runs = new ArrayList<>();
+            TreeSet<String> run = new TreeSet<>(order);
+            long runSize = 0;
+            try {
+                Iterator<String> iterator = words.iterator();
+                while (iterator.hasNext()) {
+                    String word = iterator.next();
+                    if (run.add(word)) {
+                        runSize += ENTRY_OVERHEAD + 2L * word.length();
+                        if (runSize > memoryBudget) {
+                            runs.add(spill(run.iterator(), tempDir));
+                            run.clear();
+                            runSize = 0;
+                        }
+                    }
+                }
+                if (runs.isEmpty()) {
+                    return run.iterator();
+                }
+                if (!run.isEmpty()) {
+                    runs.add(spill(run.iterator(), tempDir));
+                    run.clear();
+                }
+                while (runs.size() > fanIn) {
+                    runs = mergePass(runs);
+                }
+            } catch (IOException | RuntimeException e) {
+                runs.forEach(ExternalSort::deleteQuietly);
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            }
+            merge = new MergingIterator(runs, order, readBuffer);
+            return merge;
+        }
+
+        /**
+         * Merges every group of fanIn runs into one bigger run, merged runs are deleted
+         */
+        private List<Path> mergePass(List<Path> runs) throws IOException {
+            List<Path> merged = new ArrayList<>();
+            try {
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    List<Path> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    try (MergingIterator groupMerge = new MergingIterator(group, order, readBuffer)) {
+                        merged.add(spill(groupMerge, tempDir));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                merged.forEach(ExternalSort::deleteQuietly);
+                throw e;
+            }
+            return merged;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super String> getComparator() {
+            return order;
+        }
+
+        @Override
+        public void close() {
+            if (merge != null) {
+                merge.close();
+            }
+        }
+    }
+
+    private static Path spill(Iterator<String> run, Path tempDir) throws IOException {
+        Path file = Files.createTempFile(tempDir, "external-sort", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), MAX_READ_BUFFER))) {
+            while (run.hasNext()) {
+                byte[] bytes = run.next().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // temp dir is cleaned up by OS eventually
+        }
+    }
+
+    private static final class Run {
+        final Path file;
+        final DataInputStream in;
+        String head;
+
+        Run(Path file, int bufferSize) throws IOException {
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize));
+        }
+
+        boolean advance() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                head = null;
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // nothing to do, file is deleted right away
+            }
+            deleteQuietly(file);
+        }
+    }
+
+    private static final class MergingIterator implements Iterator<String>, Closeable {
+        private final Comparator<String> order;
+        private final PriorityQueue<Run> heads;
+        private final List<Run> open = new ArrayList<>();
+        private String last;
+        private String next;
+
+        MergingIterator(List<Path> files, Comparator<String> order, int bufferSize) {
+            this.order = order;
+            this.heads = new PriorityQueue<>(files.size(), (a, b) -> order.compare(a.head, b.head));
+            try {
+                for (Path file : files) {
+                    Run run = new Run(file, bufferSize);
+                    open.add(run);
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                files.forEach(ExternalSort::deleteQuietly);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && !heads.isEmpty()) {
+                    Run run = heads.poll();
+                    String word = run.head;
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                    if (last == null || order.compare(last, word) != 0) {
+                        next = word;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+            if (next == null) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void close() {
+            open.forEach(Run::close);
+            open.clear();
+            heads.clear();
+        }
+    }
+
+    @Test
+    public void shouldSortSonnetWordsLikeInMemoryPipelineWithinTinyBudget() throws Exception {
+        Path tempDir = Files.createTempDirectory("external-sort");
+        try {
+            List<String> expected = sonnetWords()
+                    .distinct()
+                    .sorted(BY_LENGTH_THEN_ALPHABETICALLY)
+                    .collect(toList());
+
+            List<String> actual;
+            try (Stream<String> sorted = sortedDistinct(sonnetWords(), BY_LENGTH_THEN_ALPHABETICALLY, 1024, tempDir)) {
+                Iterator<String> iterator = sorted.iterator();
+                actual = new ArrayList<>();
+                actual.add(iterator.next());
+                assertThat(Files.list(tempDir).count() > 5, is(true));
+                iterator.forEachRemaining(actual::add);
+            }
+
+            assertThat(actual, is(expected));
+            assertThat(Files.list(tempDir).count(), is(0L));
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void shouldMergeRunsInPassesWhenThereAreMoreThanFanIn() throws Exception {
+        Path tempDir = Files.createTempDirectory("external-sort");
+        try {
+            List<String> expected = sonnetWords()
+                    .distinct()
+                    .sorted(BY_LENGTH_THEN_ALPHABETICALLY)
+                    .collect(toList());
+
+            List<String> actual;
+            try (Stream<String> sorted = sortedDistinct(sonnetWords(), BY_LENGTH_THEN_ALPHABETICALLY, 256, tempDir, 3)) {
+                Iterator<String> iterator = sorted.iterator();
+                actual = new ArrayList<>();
+                actual.add(iterator.next());
+                assertThat(Files.list(tempDir).count() <= 3, is(true));
+                iterator.forEachRemaining(actual::add);
+            }
+
+            assertThat(actual, is(expected));
+            assertThat(Files.list(tempDir).count(), is(0L));
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void shouldStayInMemoryWhenBudgetIsEnough() throws Exception {
+        Path tempDir = Files.createTempDirectory("external-sort");
+        try {
+            List<String> sorted = sortedDistinct(Stream.of("bb", "a", "ccc", "a", "ab"),
+                    BY_LENGTH_THEN_ALPHABETICALLY, 1 << 20, tempDir).collect(toList());
+
+            assertThat(sorted, is(Arrays.asList("a", "ab", "bb", "ccc")));
+            assertThat(Files.list(tempDir).count(), is(0L));
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void shouldRemoveRunsWhenClosedBeforeEnd() throws Exception {
+        Path tempDir = Files.createTempDirectory("external-sort");
+        try {
+            try (Stream<String> sorted = sortedDistinct(sonnetWords(), BY_LENGTH_THEN_ALPHABETICALLY, 512, tempDir)) {
+                assertThat(sorted.findFirst().isPresent(), is(true));
+            }
+            assertThat(Files.list(tempDir).count(), is(0L));
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void shouldSortAgainWhenAskedForAnotherOrderAfterSpilling() throws Exception {
+        Path tempDir = Files.createTempDirectory("external-sort");
+        try {
+            List<String> words = Arrays.asList("zz", "e", "aaa", "b", "dd", "ccc", "a", "bb", "e", "zz");
+            List<String> naturallySorted;
+            try (Stream<String> sorted = sortedDistinct(words.stream(), BY_LENGTH_THEN_ALPHABETICALLY, 1, tempDir)) {
+                naturallySorted = sorted.sorted().collect(toList());
+            }
+
+            assertThat(naturallySorted, is(Arrays.asList("a", "aaa", "b", "bb", "ccc", "dd", "e", "zz")));
+            assertThat(Files.list(tempDir).count(), is(0L));
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void shouldReadInputLazilyAndCloseItWithResult() throws Exception {
+        int[] read = {0};
+        boolean[] closed = {false};
+        Stream<String> words = Stream.of("b", "a").peek(word -> read[0]++).onClose(() -> closed[0] = true);
+
+        try (Stream<String> sorted = sortedDistinct(words, BY_LENGTH_THEN_ALPHABETICALLY, 1 << 20)) {
+            assertThat(read[0], is(0));
+            assertThat(sorted.collect(toList()), is(Arrays.asList("a", "b")));
+        }
+        assertThat(closed[0], is(true));
+    }
+
+    private static Stream<String> sonnetWords() throws IOException {
+        return Files.readAllLines(Paths.get("SonnetI.txt"), StandardCharsets.UTF_8).stream()
+                .flatMap(line -> Stream.of(line.split(LambdasHackingExercises.REGEXP)))
+                .filter(word -> word.length() > 0)
+                .map(String::toLowerCase);
+    }
+}
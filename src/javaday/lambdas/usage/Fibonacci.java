@@ -20,8 +20,19 @@ public class Fibonacci {
         cache.put(1, 1L);
     }
 
+    /**
+     * Fills cache bottom up instead of recursive computeIfAbsent, which may not modify map it is computing for
+     * (ConcurrentModificationException since Java 9). Fails fast past F(92) instead of overflowing silently.
+     */
     public long fibonacci(int x) {
-        return cache.computeIfAbsent(x, n -> fibonacci(n-1) + fibonacci(n-2));
+        Long cached = cache.get(x);
+        if (cached != null) {
+            return cached;
+        }
+        for (int n = cache.size(); n <= x; n++) {
+            cache.put(n, Math.addExact(cache.get(n - 1), cache.get(n - 2)));
+        }
+        return cache.get(x);
     }
 
     @Test
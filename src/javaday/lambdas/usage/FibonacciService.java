@@ -0,0 +1,101 @@
+package javaday.lambdas.usage;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe alternative to {@link Fibonacci} meant to be shared by many request threads.
+ * Every F(n) fitting into long (n <= 92) is precomputed once into immutable table, larger ones are
+ * computed as {@link BigInteger} by fast doubling in O(log n) multiplications without recursion
+ * and shared through lock free bounded cache, so concurrent queries never block each other.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class FibonacciService {
+
+    public static final int MAX_LONG_FIBONACCI = 92;
+    public static final int DEFAULT_MAX_CACHED_VALUES = 10_000;
+
+    private static final long[] LONG_FIBONACCI = new long[MAX_LONG_FIBONACCI + 1];
+
+    static {
+        LONG_FIBONACCI[1] = 1;
+        for (int n = 2; n <= MAX_LONG_FIBONACCI; n++) {
+            LONG_FIBONACCI[n] = LONG_FIBONACCI[n - 1] + LONG_FIBONACCI[n - 2];
+        }
+    }
+
+    private final ConcurrentMap<Integer, BigInteger> cache = new ConcurrentHashMap<>();
+    private final int maxCachedValues;
+
+    public FibonacciService() {
+        this(DEFAULT_MAX_CACHED_VALUES);
+    }
+
+    /**
+     * @param maxCachedValues once cache holds that many values new ones are computed but not cached any more
+     */
+    public FibonacciService(int maxCachedValues) {
+        this.maxCachedValues = maxCachedValues;
+    }
+
+    /**
+     * @throws ArithmeticException if F(n) doesn't fit into long, use {@link #bigFibonacci(int)} then
+     */
+    public long fibonacci(int n) {
+        checkIndex(n);
+        if (n > MAX_LONG_FIBONACCI) {
+            throw new ArithmeticException("F(" + n + ") overflows long");
+        }
+        return LONG_FIBONACCI[n];
+    }
+
+    public BigInteger bigFibonacci(int n) {
+        checkIndex(n);
+        if (n <= MAX_LONG_FIBONACCI) {
+            return BigInteger.valueOf(LONG_FIBONACCI[n]);
+        }
+        BigInteger cached = cache.get(n);
+        if (cached != null) {
+            return cached;
+        }
+        // Two threads may both compute same value, which is cheaper than making one wait for another
+        BigInteger value = fastDoubling(n);
+        if (cache.size() < maxCachedValues) {
+            cache.putIfAbsent(n, value);
+        }
+        return value;
+    }
+
+    public int cachedValues() {
+        return cache.size();
+    }
+
+    /**
+     * Walks bits of n from the highest one keeping a = F(k), b = F(k + 1), where k is prefix of n read so far:
+     * F(2k) = F(k) * (2F(k + 1) - F(k)), F(2k + 1) = F(k)^2 + F(k + 1)^2
+     */
+    static BigInteger fastDoubling(int n) {
+        BigInteger a = BigInteger.ZERO;
+        BigInteger b = BigInteger.ONE;
+        for (int bit = 31 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            BigInteger doubled = a.multiply(b.shiftLeft(1).subtract(a));
+            BigInteger doubledPlusOne = a.multiply(a).add(b.multiply(b));
+            if ((n & (1 << bit)) != 0) {
+                a = doubledPlusOne;
+                b = doubled.add(doubledPlusOne);
+            } else {
+                a = doubled;
+                b = doubledPlusOne;
+            }
+        }
+        return a;
+    }
+
+    private static void checkIndex(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Fibonacci index must not be negative: " + n);
+        }
+    }
+}
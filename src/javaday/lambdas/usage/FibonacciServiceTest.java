@@ -0,0 +1,60 @@
+package javaday.lambdas.usage;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class FibonacciServiceTest {
+
+    private final FibonacciService service = new FibonacciService();
+
+    @Test
+    public void shouldMatchMemoizedFibonacciWhileItFitsIntoLong() throws Exception {
+        Fibonacci memoized = new Fibonacci();
+        for (int n = 0; n <= FibonacciService.MAX_LONG_FIBONACCI; n++) {
+            assertThat(service.fibonacci(n), is(memoized.fibonacci(n)));
+            assertThat(FibonacciService.fastDoubling(n), is(BigInteger.valueOf(memoized.fibonacci(n))));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void shouldFailFastInsteadOfOverflowingLong() throws Exception {
+        service.fibonacci(FibonacciService.MAX_LONG_FIBONACCI + 1);
+    }
+
+    @Test
+    public void shouldComputeLargeValuesAsBigInteger() throws Exception {
+        assertThat(service.bigFibonacci(100), is(new BigInteger("354224848179261915075")));
+        assertThat(service.bigFibonacci(10_000).bitLength(), is(6942));
+        assertThat(service.bigFibonacci(1000).add(service.bigFibonacci(1001)), is(service.bigFibonacci(1002)));
+    }
+
+    @Test
+    public void shouldShareCacheBetweenThreadsUpToItsBound() throws Exception {
+        FibonacciService boundedService = new FibonacciService(50);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BigInteger>> results = IntStream.range(0, 800)
+                    .mapToObj(i -> executor.submit(() -> boundedService.bigFibonacci(100 + i % 100)))
+                    .collect(toList());
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get(), is(FibonacciService.fastDoubling(100 + i % 100)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(boundedService.cachedValues() <= 50 + 8, is(true));
+    }
+}
@@ -0,0 +1,87 @@
+package javaday.lambdas.usage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte range of a file which starts at the beginning of a line and ends right after a '\n'
+ * (or at the end of file), so every chunk can be parsed independently on its own core.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class FileChunk {
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    public final long start;
+    public final long end;
+
+    FileChunk(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long size() {
+        return end - start;
+    }
+
+    /**
+     * Splits file into roughly equal chunks, none of them bigger than maxChunkSize unless a single line is.
+     */
+    public static List<FileChunk> split(FileChannel channel, int chunks, long maxChunkSize) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(1, Math.min(maxChunkSize, (size + chunks - 1) / Math.max(1, chunks)));
+        List<FileChunk> result = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+            result.add(new FileChunk(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    public byte[] read(FileChannel channel) {
+        if (size() > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Chunk is too big to be read at once: " + size());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size());
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.array();
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
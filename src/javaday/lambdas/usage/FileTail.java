@@ -0,0 +1,74 @@
+package javaday.lambdas.usage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Remembers how far a growing file was read and hands out only complete lines appended since last poll.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class FileTail {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private long offset;
+
+    public FileTail(Path file) {
+        this(file, 0);
+    }
+
+    public FileTail(Path file, long offset) {
+        this.file = file;
+        this.offset = offset;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return number of lines passed to consumer
+     */
+    public int poll(Consumer<String> consumer) throws IOException {
+        int lines = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                throw new IllegalStateException(file + " was truncated below already read offset " + offset);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = offset;
+            int read;
+            while ((read = channel.read(buffer, position)) > 0) {
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        consumer.accept(toLine(line));
+                        line.reset();
+                        lines++;
+                        offset = position + i + 1;
+                    } else {
+                        line.write(b);
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+        }
+        return lines;
+    }
+
+    private static String toLine(ByteArrayOutputStream bytes) {
+        String line = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
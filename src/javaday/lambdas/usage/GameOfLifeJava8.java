@@ -2,12 +2,10 @@ package javaday.lambdas.usage;
 
 import org.junit.Test;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
 
-import static java.util.stream.Collectors.toSet;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -17,80 +15,251 @@ import static org.junit.Assert.assertThat;
 public class GameOfLifeJava8 {
     @Test
     public void shouldDieIfLessThenTwoNeighbours() throws Exception {
-        Grid grid = new Grid();
-        grid.setAlive(0,0);
-        grid.nextState();
-        assertThat(grid.isAlive(0, 0), is(false));
-        grid.setAlive(0, 0);
-        grid.setAlive(1, 1);
-        grid.nextState();
-        assertThat(grid.isAlive(0, 0), is(false));
-        assertThat(grid.isAlive(1, 1), is(false));
+        for (LifeGrid grid : grids()) {
+            grid.setAlive(0,0);
+            grid.nextState();
+            assertThat(grid.isAlive(0, 0), is(false));
+            grid.setAlive(0, 0);
+            grid.setAlive(1, 1);
+            grid.nextState();
+            assertThat(grid.isAlive(0, 0), is(false));
+            assertThat(grid.isAlive(1, 1), is(false));
+        }
     }
 
     @Test
     public void shouldDieIfMoreThenThreeNeighbours() throws Exception {
-        Grid grid = new Grid();
-        grid.setAlive(0, 0);
-        grid.setAlive(1, 1);
-        grid.setAlive(0, 1);
-        grid.setAlive(1, 0);
-        grid.setAlive(-1, -1);
-        grid.nextState();
-        assertThat(grid.isAlive(0, 0), is(false));
+        for (LifeGrid grid : grids()) {
+            grid.setAlive(0, 0);
+            grid.setAlive(1, 1);
+            grid.setAlive(0, 1);
+            grid.setAlive(1, 0);
+            grid.setAlive(-1, -1);
+            grid.nextState();
+            assertThat(grid.isAlive(0, 0), is(false));
+        }
     }
 
     @Test
     public void shouldBecomeAliveIfExactlyThreeNeighbours() throws Exception {
+        for (LifeGrid grid : grids()) {
+            grid.setAlive(0, 0);
+            grid.setAlive(1, 1);
+            grid.setAlive(0, 1);
+            grid.nextState();
+            assertThat(grid.isAlive(1, 0), is(true));
+        }
+    }
+
+    @Test
+    public void shouldEvolveSameWayOnEveryEngine() throws Exception {
+        Random random = new Random(42);
+        List<LifeGrid> grids = grids();
+        for (int i = 0; i < 600; i++) {
+            int x = random.nextInt(80) - 40;
+            int y = random.nextInt(80) - 40;
+            grids.forEach(grid -> grid.setAlive(x, y));
+        }
+        for (int generation = 0; generation < 30; generation++) {
+            grids.forEach(LifeGrid::nextState);
+            Set<Point> expected = aliveCells(grids.get(0), 80);
+            for (LifeGrid grid : grids) {
+                assertThat(grid.getClass().getSimpleName() + " at generation " + generation, aliveCells(grid, 80), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void shouldJumpPowerOfTwoGenerationsAtOnce() throws Exception {
+        HashLifeGrid hashLife = new HashLifeGrid(1000);
+        TiledLifeGrid tiled = new TiledLifeGrid();
+        int[][] gliderAndBlinker = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}, {-20, -20}, {-19, -20}, {-18, -20}};
+        for (int[] cell : gliderAndBlinker) {
+            hashLife.setAlive(cell[0], cell[1]);
+            tiled.setAlive(cell[0], cell[1]);
+        }
+
+        hashLife.advance(7);
+        for (int generation = 0; generation < 128; generation++) {
+            tiled.nextState();
+        }
+
+        assertThat(hashLife.generation(), is(128L));
+        assertThat(hashLife.population(), is(8L));
+        assertThat(hashLife.isAlive(33, 32), is(true));
+        assertThat(aliveCells(hashLife, 80), is(aliveCells(tiled, 80)));
+        assertThat(hashLife.cachedNodes() <= 1000, is(true));
+    }
+
+    @Test
+    public void shouldExamineOnlyCellsAroundChanges() throws Exception {
+        TiledLifeGrid tiled = new TiledLifeGrid();
+        int[][] blockAndBlinker = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {200, 200}, {201, 200}, {202, 200}};
+        for (int[] cell : blockAndBlinker) {
+            tiled.setAlive(cell[0], cell[1]);
+        }
+
+        tiled.nextState();
+        long examinedAfterSetup = tiled.cellsExamined();
+        tiled.nextState();
+        tiled.nextState();
+
+        assertThat(tiled.cellsExamined() < examinedAfterSetup, is(true));
+        assertThat(tiled.cellsExamined(), is(3 * 5L * TiledLifeGrid.TILE_SIZE));
+        assertThat(tiled.population(), is(7L));
+        assertThat(tiled.isAlive(201, 199), is(true));
+        assertThat(tiled.isAlive(1, 1), is(true));
+    }
+
+    @Test
+    public void shouldPackNegativeAndZeroCoordinates() throws Exception {
         Grid grid = new Grid();
         grid.setAlive(0, 0);
-        grid.setAlive(1, 1);
-        grid.setAlive(0, 1);
-        grid.nextState();
-        assertThat(grid.isAlive(1, 0), is(true));
+        grid.setAlive(-1, 0);
+        grid.setAlive(0, -1);
+        grid.setAlive(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        assertThat(Grid.cellX(Grid.cell(-7, 3)), is(-7));
+        assertThat(Grid.cellY(Grid.cell(-7, 3)), is(3));
+        assertThat(grid.numberOfNeighbours(-1, -1), is(3));
+        assertThat(grid.numberOfNeighbours(0, 0), is(2));
+        assertThat(grid.isAlive(Integer.MIN_VALUE, Integer.MAX_VALUE), is(true));
+        assertThat(grid.isAlive(Integer.MAX_VALUE, Integer.MIN_VALUE), is(false));
+    }
+
+    @Test
+    public void shouldShrinkCellSetsAfterPopulationSpike() throws Exception {
+        LongHashSet cells = new LongHashSet();
+        LongIntHashMap counts = new LongIntHashMap();
+        for (int x = 0; x < 10_000; x++) {
+            cells.add(Grid.cell(x, 0));
+            counts.increment(Grid.cell(x, 0));
+        }
+        int peakCapacity = cells.capacity();
+
+        cells.clear();
+        counts.clear();
+        cells.add(Grid.cell(1, 1));
+        counts.increment(Grid.cell(1, 1));
+        cells.clear();
+        counts.clear();
+
+        assertThat(cells.capacity() < peakCapacity / 100, is(true));
+        assertThat(counts.capacity() < peakCapacity / 100, is(true));
+        assertThat(cells.contains(Grid.cell(1, 1)), is(false));
+        assertThat(counts.get(Grid.cell(1, 1)), is(0));
+    }
+
+    @Test
+    public void shouldMapTilesByPrimitiveKeysIncludingZero() throws Exception {
+        LongObjectHashMap<String> tiles = new LongObjectHashMap<>();
+        for (int tx = -50; tx < 50; tx++) {
+            tiles.put(TiledLifeGrid.tileKey(tx, -tx), "tile " + tx);
+        }
+        String previous = tiles.put(TiledLifeGrid.tileKey(0, 0), "origin");
+
+        assertThat(previous, is("tile 0"));
+        assertThat(tiles.size(), is(100));
+        assertThat(tiles.get(0L), is("origin"));
+        assertThat(tiles.get(TiledLifeGrid.tileKey(-7, 7)), is("tile -7"));
+        assertThat(tiles.get(TiledLifeGrid.tileKey(7, 7)) == null, is(true));
+
+        tiles.clear();
+        assertThat(tiles.size(), is(0));
+        assertThat(tiles.get(0L) == null, is(true));
+        assertThat(tiles.get(TiledLifeGrid.tileKey(-7, 7)) == null, is(true));
+    }
+
+    private static List<LifeGrid> grids() {
+        return Arrays.asList(new Grid(), new TiledLifeGrid(), new TiledLifeGrid(ForkJoinPool.commonPool()),
+                new HashLifeGrid(), new HashLifeGrid(64));
+    }
+
+    private static Set<Point> aliveCells(LifeGrid grid, int radius) {
+        Set<Point> alive = new HashSet<>();
+        for (int x = -radius; x < radius; x++) {
+            for (int y = -radius; y < radius; y++) {
+                if (grid.isAlive(x, y)) {
+                    alive.add(new Point(x, y));
+                }
+            }
+        }
+        return alive;
     }
 
-    static class Grid{
+    /**
+     * Live cells are packed longs (see {@link #cell(int, int)}) in primitive open addressing set, neighbours
+     * are counted once per generation into primitive count map, so probes don't allocate anything.
+     */
+    static class Grid implements LifeGrid {
 
-        private Set<Point> alivePoints = new HashSet<>();
+        private LongHashSet alivePoints = new LongHashSet();
+        private LongHashSet nextAlivePoints = new LongHashSet();
+        private final LongIntHashMap neighbourCounts = new LongIntHashMap();
+        private final LongConsumer incrementCount = neighbourCounts::increment;
+        private final LongConsumer countNeighbours = cell -> neighboursOf(cell, incrementCount);
+        private final LongIntHashMap.LongIntConsumer survivorOrNewborn = (cell, neighbours) -> {
+            if (neighbours == 3 || (neighbours == 2 && alivePoints.contains(cell))) {
+                nextAlivePoints.add(cell);
+            }
+        };
 
+        @Override
         public void setAlive(int x, int y) {
-            alivePoints.add(new Point(x,y));
+            alivePoints.add(cell(x, y));
         }
 
+        @Override
         public boolean isAlive(int x, int y) {
-            return alivePoints.contains(new Point(x,y));
+            return alivePoints.contains(cell(x, y));
         }
 
+        @Override
         public void nextState() {
-            Set<Point> survivors = alivePoints.stream()
-                    .filter(p -> numberOfNeighbours(p) >= 2 && numberOfNeighbours(p) < 4)
-                    .collect(toSet());
-            Set<Point> newborns = alivePoints.stream()
-                    .flatMap(this::neighboursOf)
-                    .filter(not(alivePoints::contains))
-                    .filter(p -> numberOfNeighbours(p) == 3)
-                    .collect(toSet());
-            alivePoints = survivors;
-            alivePoints.addAll(newborns);
-        }
-
-        private int numberOfNeighbours(Point p) {
-            return (int)neighboursOf(p)
-                    .filter(alivePoints::contains)
-                    .count();
-        }
-
-        private Stream<Point> neighboursOf(Point p) {
-            return Stream.of(
-                    new Point(p.x + 1, p.y + 1),
-                    new Point(p.x + 1, p.y),
-                    new Point(p.x + 1, p.y - 1),
-                    new Point(p.x, p.y + 1),
-                    new Point(p.x, p.y - 1),
-                    new Point(p.x - 1, p.y + 1),
-                    new Point(p.x - 1, p.y),
-                    new Point(p.x - 1, p.y - 1));
+            neighbourCounts.clear();
+            alivePoints.forEach(countNeighbours);
+            nextAlivePoints.clear();
+            neighbourCounts.forEach(survivorOrNewborn);
+            LongHashSet current = alivePoints;
+            alivePoints = nextAlivePoints;
+            nextAlivePoints = current;
+        }
+
+        int numberOfNeighbours(int x, int y) {
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if ((dx != 0 || dy != 0) && alivePoints.contains(cell(x + dx, y + dy))) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static void neighboursOf(long cell, LongConsumer action) {
+            int x = cellX(cell);
+            int y = cellY(cell);
+            action.accept(cell(x + 1, y + 1));
+            action.accept(cell(x + 1, y));
+            action.accept(cell(x + 1, y - 1));
+            action.accept(cell(x, y + 1));
+            action.accept(cell(x, y - 1));
+            action.accept(cell(x - 1, y + 1));
+            action.accept(cell(x - 1, y));
+            action.accept(cell(x - 1, y - 1));
+        }
+
+        static long cell(int x, int y) {
+            return ((long) y << 32) | (x & 0xFFFFFFFFL);
+        }
+
+        static int cellX(long cell) {
+            return (int) cell;
+        }
+
+        static int cellY(long cell) {
+            return (int) (cell >> 32);
         }
     }
 
@@ -120,6 +289,4 @@ public class GameOfLifeJava8 {
             return result;
         }
     }
-
-    static <T> Predicate<T> not(Predicate<T> p) {return p.negate();}
 }
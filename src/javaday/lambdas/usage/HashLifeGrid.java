@@ -0,0 +1,308 @@
+package javaday.lambdas.usage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashlife {@link LifeGrid}: universe is a quadtree of hash-consed nodes, every node remembers its own
+ * future (center half advanced by 2^j generations), so repetitive patterns are advanced by
+ * {@link #advance(int)} 2^k generations in a single call.
+ *
+ * Canonical node cache is bounded with LRU eviction. Evicted nodes stay valid,
+ * only their future results can't be shared any more and get recomputed when needed.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class HashLifeGrid implements LifeGrid {
+
+    public static final int DEFAULT_MAX_CACHED_NODES = 1 << 20;
+
+    private static final int MIN_ROOT_LEVEL = 3;
+
+    private final Node dead = new Node(false);
+    private final Node alive = new Node(true);
+    private final List<Node> emptyNodes = new ArrayList<>();
+    private final Map<Node, Node> canonicalNodes;
+
+    private Node root;
+    private long generation;
+
+    public HashLifeGrid() {
+        this(DEFAULT_MAX_CACHED_NODES);
+    }
+
+    public HashLifeGrid(int maxCachedNodes) {
+        canonicalNodes = new LinkedHashMap<Node, Node>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Node, Node> eldest) {
+                return size() > maxCachedNodes;
+            }
+        };
+        emptyNodes.add(dead);
+        root = empty(MIN_ROOT_LEVEL);
+    }
+
+    @Override
+    public void setAlive(int x, int y) {
+        while (!contains(x, y)) {
+            root = expand(root);
+        }
+        root = setAlive(root, -half(root), -half(root), x, y);
+    }
+
+    @Override
+    public boolean isAlive(int x, int y) {
+        if (!contains(x, y)) {
+            return false;
+        }
+        Node node = root;
+        long left = -half(root);
+        long top = -half(root);
+        while (node.level > 0) {
+            long half = 1L << (node.level - 1);
+            boolean east = x >= left + half;
+            boolean south = y >= top + half;
+            node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+            left += east ? half : 0;
+            top += south ? half : 0;
+        }
+        return node.alive;
+    }
+
+    @Override
+    public void nextState() {
+        advance(0);
+    }
+
+    /**
+     * Advances universe by 2^exponent generations at once
+     */
+    public void advance(int exponent) {
+        while (root.level < exponent + 2 || !isPadded(root)) {
+            root = expand(root);
+        }
+        root = successor(expand(root), exponent);
+        generation += 1L << exponent;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public long population() {
+        return root.population;
+    }
+
+    public int cachedNodes() {
+        return canonicalNodes.size();
+    }
+
+    private boolean contains(long x, long y) {
+        long half = half(root);
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    private static long half(Node node) {
+        return 1L << (node.level - 1);
+    }
+
+    /**
+     * All live cells are inside the central quarter, so nothing can escape result of successor
+     */
+    private boolean isPadded(Node node) {
+        return node.population == node.nw.se.population + node.ne.sw.population
+                + node.sw.ne.population + node.se.nw.population;
+    }
+
+    private Node setAlive(Node node, long left, long top, long x, long y) {
+        if (node.level == 0) {
+            return alive;
+        }
+        long half = 1L << (node.level - 1);
+        boolean east = x >= left + half;
+        boolean south = y >= top + half;
+        long childLeft = east ? left + half : left;
+        long childTop = south ? top + half : top;
+        if (south) {
+            return east
+                    ? join(node.nw, node.ne, node.sw, setAlive(node.se, childLeft, childTop, x, y))
+                    : join(node.nw, node.ne, setAlive(node.sw, childLeft, childTop, x, y), node.se);
+        }
+        return east
+                ? join(node.nw, setAlive(node.ne, childLeft, childTop, x, y), node.sw, node.se)
+                : join(setAlive(node.nw, childLeft, childTop, x, y), node.ne, node.sw, node.se);
+    }
+
+    /**
+     * Same node one level up, keeping it in the center so coordinates don't move
+     */
+    private Node expand(Node node) {
+        Node border = empty(node.level - 1);
+        return join(
+                join(border, border, border, node.nw),
+                join(border, border, node.ne, border),
+                join(border, node.sw, border, border),
+                join(node.se, border, border, border));
+    }
+
+    private Node empty(int level) {
+        while (emptyNodes.size() <= level) {
+            Node smaller = emptyNodes.get(emptyNodes.size() - 1);
+            emptyNodes.add(join(smaller, smaller, smaller, smaller));
+        }
+        return emptyNodes.get(level);
+    }
+
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        Node candidate = new Node(nw, ne, sw, se);
+        Node canonical = canonicalNodes.get(candidate);
+        if (canonical == null) {
+            canonicalNodes.put(candidate, candidate);
+            canonical = candidate;
+        }
+        return canonical;
+    }
+
+    /**
+     * Center of node (one level down) advanced by 2^exponent generations, exponent is at most level - 2
+     */
+    private Node successor(Node node, int exponent) {
+        if (node.population == 0) {
+            return empty(node.level - 1);
+        }
+        Node memoized = node.result(exponent);
+        if (memoized != null) {
+            return memoized;
+        }
+        Node result;
+        if (node.level == 2) {
+            result = lifeStep(node);
+        } else {
+            Node n00 = node.nw, n01 = centeredHorizontal(node.nw, node.ne), n02 = node.ne;
+            Node n10 = centeredVertical(node.nw, node.sw), n11 = center(node), n12 = centeredVertical(node.ne, node.se);
+            Node n20 = node.sw, n21 = centeredHorizontal(node.sw, node.se), n22 = node.se;
+
+            boolean fullStep = exponent == node.level - 2;
+            Node r00 = fullStep ? successor(n00, exponent - 1) : center(n00);
+            Node r01 = fullStep ? successor(n01, exponent - 1) : center(n01);
+            Node r02 = fullStep ? successor(n02, exponent - 1) : center(n02);
+            Node r10 = fullStep ? successor(n10, exponent - 1) : center(n10);
+            Node r11 = fullStep ? successor(n11, exponent - 1) : center(n11);
+            Node r12 = fullStep ? successor(n12, exponent - 1) : center(n12);
+            Node r20 = fullStep ? successor(n20, exponent - 1) : center(n20);
+            Node r21 = fullStep ? successor(n21, exponent - 1) : center(n21);
+            Node r22 = fullStep ? successor(n22, exponent - 1) : center(n22);
+
+            int remaining = fullStep ? exponent - 1 : exponent;
+            result = join(
+                    successor(join(r00, r01, r10, r11), remaining),
+                    successor(join(r01, r02, r11, r12), remaining),
+                    successor(join(r10, r11, r20, r21), remaining),
+                    successor(join(r11, r12, r21, r22), remaining));
+        }
+        node.remember(exponent, result);
+        return result;
+    }
+
+    /**
+     * Base case: 4x4 cells into its 2x2 center one generation later
+     */
+    private Node lifeStep(Node node) {
+        boolean[][] cells = new boolean[4][4];
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+                int qx = x & 1, qy = y & 1;
+                cells[y][x] = (qy == 0 ? (qx == 0 ? quadrant.nw : quadrant.ne) : (qx == 0 ? quadrant.sw : quadrant.se)).alive;
+            }
+        }
+        return join(nextCell(cells, 1, 1), nextCell(cells, 2, 1), nextCell(cells, 1, 2), nextCell(cells, 2, 2));
+    }
+
+    private Node nextCell(boolean[][] cells, int x, int y) {
+        int neighbours = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && cells[y + dy][x + dx]) {
+                    neighbours++;
+                }
+            }
+        }
+        return neighbours == 3 || (neighbours == 2 && cells[y][x]) ? alive : dead;
+    }
+
+    private Node centeredHorizontal(Node west, Node east) {
+        return join(west.ne, east.nw, west.se, east.sw);
+    }
+
+    private Node centeredVertical(Node north, Node south) {
+        return join(north.sw, north.se, south.nw, south.ne);
+    }
+
+    private Node center(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+     * Quadtree node, equal to another one when it has same children (children are canonical, so identity is enough)
+     */
+    private static final class Node {
+
+        final int level;
+        final Node nw, ne, sw, se;
+        final boolean alive;
+        final long population;
+        private final int hash;
+        private Node[] results;
+
+        Node(boolean alive) {
+            this.level = 0;
+            this.nw = this.ne = this.sw = this.se = null;
+            this.alive = alive;
+            this.population = alive ? 1 : 0;
+            this.hash = alive ? 1 : 0;
+        }
+
+        Node(Node nw, Node ne, Node sw, Node se) {
+            this.level = nw.level + 1;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.alive = false;
+            this.population = nw.population + ne.population + sw.population + se.population;
+            int h = System.identityHashCode(nw);
+            h = 31 * h + System.identityHashCode(ne);
+            h = 31 * h + System.identityHashCode(sw);
+            h = 31 * h + System.identityHashCode(se);
+            this.hash = h;
+        }
+
+        Node result(int exponent) {
+            return results == null ? null : results[exponent];
+        }
+
+        void remember(int exponent, Node result) {
+            if (results == null) {
+                results = new Node[level - 1];
+            }
+            results[exponent] = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node node = (Node) o;
+            return level == node.level && alive == node.alive
+                    && nw == node.nw && ne == node.ne && sw == node.sw && se == node.se;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
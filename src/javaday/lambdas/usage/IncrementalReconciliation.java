@@ -0,0 +1,139 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.Book;
+import javaday.lambdas.usage.ProcessingCsvFiles.BookInfo;
+import javaday.lambdas.usage.ProcessingCsvFiles.BookSummary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Long-lived variant of {@link ProcessingCsvFiles}: master index stays resident and every appended
+ * transactional line or master update only re-classifies books of the affected name,
+ * so a batch costs proportional to its size instead of re-reading both files.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class IncrementalReconciliation {
+
+    public enum Status {MISSING, ACTIVE, EXPIRED}
+
+    private final Map<String, List<BookInfo>> masterBookData = new HashMap<>();
+    private final Map<String, BookSummary> masterBookSummaries = new HashMap<>();
+    private final Map<Integer, String> masterNamesById = new HashMap<>();
+    private final Map<String, Book> existingBooks = new HashMap<>();
+    private final Map<Status, Map<String, Book>> classified = new EnumMap<>(Status.class);
+
+    private final FileTail masterTail;
+    private final FileTail transactionalTail;
+
+    public IncrementalReconciliation() {
+        this(null, null);
+    }
+
+    /**
+     * Files are tailed from the beginning, first {@link #poll()} performs the full load.
+     */
+    public IncrementalReconciliation(Path masterFile, Path transactionalFile) {
+        this.masterTail = masterFile == null ? null : new FileTail(masterFile);
+        this.transactionalTail = transactionalFile == null ? null : new FileTail(transactionalFile);
+        for (Status status : Status.values()) {
+            classified.put(status, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Applies master lines first so transactional lines of the same batch see them.
+     *
+     * @return number of lines applied
+     */
+    public synchronized int poll() throws IOException {
+        int lines = 0;
+        if (masterTail != null) {
+            lines += masterTail.poll(line -> updateMasterRecord(ProcessingCsvFiles.toBookInfo(line)));
+        }
+        if (transactionalTail != null) {
+            lines += transactionalTail.poll(line -> addBook(ProcessingCsvFiles.toBook(line)));
+        }
+        return lines;
+    }
+
+    /**
+     * Adds master record or replaces the one with the same id, which may have been filed under another name:
+     * then both names are re-classified.
+     */
+    public synchronized void updateMasterRecord(BookInfo bookInfo) {
+        String previousName = masterNamesById.put(bookInfo.id, bookInfo.name);
+        if (previousName != null && !previousName.equals(bookInfo.name)) {
+            removeMasterRecord(previousName, bookInfo.id);
+        }
+        List<BookInfo> books = masterBookData.computeIfAbsent(bookInfo.name, name -> new ArrayList<>());
+        books.removeIf(book -> book.id == bookInfo.id);
+        books.add(bookInfo);
+        masterBookSummaries.put(bookInfo.name, BookSummary.of(books));
+        reclassify(bookInfo.name);
+    }
+
+    /**
+     * Book of the same name appended later replaces earlier one, whatever its receive date is.
+     * Unlike {@link ProcessingCsvFiles} (which keeps the latest receive date, see
+     * {@link TransactionalDataLoader.MergePolicy#LATEST_RECEIVE_DATE}) the transactional file is
+     * treated as a log of corrections here.
+     */
+    public synchronized void addBook(Book book) {
+        existingBooks.put(book.name, book);
+        classify(book);
+    }
+
+    public synchronized Status statusOf(String name) {
+        for (Map.Entry<Status, Map<String, Book>> entry : classified.entrySet()) {
+            if (entry.getValue().containsKey(name)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<Book> books(Status status) {
+        return new ArrayList<>(classified.get(status).values());
+    }
+
+    public synchronized int total(Status status) {
+        return classified.get(status).size();
+    }
+
+    private void removeMasterRecord(String name, int id) {
+        List<BookInfo> books = masterBookData.get(name);
+        books.removeIf(book -> book.id == id);
+        if (books.isEmpty()) {
+            masterBookData.remove(name);
+            masterBookSummaries.remove(name);
+        } else {
+            masterBookSummaries.put(name, BookSummary.of(books));
+        }
+        reclassify(name);
+    }
+
+    private void reclassify(String name) {
+        Book book = existingBooks.get(name);
+        if (book != null) {
+            classify(book);
+        }
+    }
+
+    private void classify(Book book) {
+        classified.values().forEach(books -> books.remove(book.name));
+        BookSummary summary = masterBookSummaries.get(book.name);
+        Status status;
+        if (summary == null) {
+            status = Status.MISSING;
+        } else if (!summary.allExpired) {
+            book.setSources(summary.activeSources);
+            status = Status.ACTIVE;
+        } else {
+            status = Status.EXPIRED;
+        }
+        classified.get(status).put(book.name, book);
+    }
+}
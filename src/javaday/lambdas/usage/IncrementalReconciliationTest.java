@@ -0,0 +1,68 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.IncrementalReconciliation.Status;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class IncrementalReconciliationTest {
+
+    @Test
+    public void shouldReclassifyOnlyAffectedBooksAsDataArrives() throws Exception {
+        Path master = Files.createTempFile("master", ".csv");
+        Path transactional = Files.createTempFile("transactional", ".csv");
+        try {
+            Files.write(master, "111,ABC,DOMAIN1,1\n112,XYZ,DOMAIN1,0\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(transactional, "ABC,1/3/2015\nXYZ,5/30/2015\nFOO,6/10/2015".getBytes(StandardCharsets.UTF_8));
+            IncrementalReconciliation reconciliation = new IncrementalReconciliation(master, transactional);
+
+            assertThat(reconciliation.poll(), is(4));
+            assertThat(reconciliation.statusOf("ABC"), is(Status.EXPIRED));
+            assertThat(reconciliation.statusOf("XYZ"), is(Status.ACTIVE));
+            assertNull("incomplete last line is not consumed yet", reconciliation.statusOf("FOO"));
+
+            Files.write(transactional, "\nBAR,6/11/2015\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Files.write(master, "113,FOO,DOMAIN2,0\n114,ABC,DOMAIN2,0\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            assertThat(reconciliation.poll(), is(4));
+            assertThat(reconciliation.statusOf("FOO"), is(Status.ACTIVE));
+            assertThat(reconciliation.statusOf("ABC"), is(Status.ACTIVE));
+            assertThat(reconciliation.statusOf("BAR"), is(Status.MISSING));
+            assertThat(reconciliation.total(Status.ACTIVE), is(3));
+            assertThat(reconciliation.total(Status.EXPIRED), is(0));
+            assertThat(reconciliation.books(Status.MISSING).stream().map(b -> b.name).collect(toList()),
+                    is(Collections.singletonList("BAR")));
+        } finally {
+            Files.delete(master);
+            Files.delete(transactional);
+        }
+    }
+
+    @Test
+    public void shouldReclassifyBothNamesWhenMasterRecordMovesToAnotherName() throws Exception {
+        IncrementalReconciliation reconciliation = new IncrementalReconciliation();
+        reconciliation.updateMasterRecord(ProcessingCsvFiles.toBookInfo("111,ABC,DOMAIN1,0"));
+        reconciliation.addBook(ProcessingCsvFiles.toBook("ABC,1/3/2015"));
+        reconciliation.addBook(ProcessingCsvFiles.toBook("XYZ,1/4/2015"));
+        assertThat(reconciliation.statusOf("ABC"), is(Status.ACTIVE));
+        assertThat(reconciliation.statusOf("XYZ"), is(Status.MISSING));
+
+        reconciliation.updateMasterRecord(ProcessingCsvFiles.toBookInfo("111,XYZ,DOMAIN1,0"));
+
+        assertThat(reconciliation.statusOf("ABC"), is(Status.MISSING));
+        assertThat(reconciliation.statusOf("XYZ"), is(Status.ACTIVE));
+        assertThat(reconciliation.total(Status.ACTIVE), is(1));
+    }
+}
@@ -0,0 +1,267 @@
+package javaday.lambdas.usage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Random access to lines of a text file. Instead of reader.lines().skip(n).limit(m), which reads
+ * everything before line n on every query, start offset of every line is kept in a sidecar index
+ * and range of lines is read straight from its position, so query cost doesn't depend on where lines are.
+ *
+ * Index is memory mapped in segments (so line count is not limited by 2GB mappings), remembers size and
+ * modification time of the file it was built from and is rebuilt as soon as file changes, including between
+ * queries of an open reader. Offsets are streamed into a temporary file while scanning, which then atomically
+ * replaces the sidecar, so concurrent rebuilds by several readers don't corrupt each other.
+ * Lines are split the way {@link java.io.BufferedReader#readLine()} does for '\n' and "\r\n" endings.
+ *
+ * Index layout: header (magic, version, file size, file modification time, line count) | line count + 1 offsets
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class IndexedLineReader implements Closeable {
+
+    public static final String INDEX_SUFFIX = ".lines.idx";
+
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int SEGMENT_OFFSETS_BITS = 27;
+    private static final long SEGMENT_OFFSETS_MASK = (1L << SEGMENT_OFFSETS_BITS) - 1;
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final Path file;
+    private final Path indexFile;
+    private final FileChannel channel;
+    private long indexedSize;
+    private long indexedModified;
+    private LongBuffer[] offsetSegments;
+    private long lineCount;
+
+    private IndexedLineReader(Path file, Path indexFile) throws IOException {
+        this.file = file;
+        this.indexFile = indexFile;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (!readIndex()) {
+                rebuildIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static IndexedLineReader open(Path file) throws IOException {
+        return open(file, file.resolveSibling(file.getFileName() + INDEX_SUFFIX));
+    }
+
+    public static IndexedLineReader open(Path file, Path indexFile) throws IOException {
+        return new IndexedLineReader(file, indexFile);
+    }
+
+    public long lineCount() throws IOException {
+        refreshIfChanged();
+        return lineCount;
+    }
+
+    public String line(long number) throws IOException {
+        List<String> lines = lines(number, number + 1);
+        if (lines.isEmpty()) {
+            throw new IndexOutOfBoundsException("No line " + number + " in " + file);
+        }
+        return lines.get(0);
+    }
+
+    /**
+     * @return lines [from, to) counting from 0, fewer of them if file ends earlier
+     */
+    public List<String> lines(long from, long to) throws IOException {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Wrong line range [" + from + ", " + to + ")");
+        }
+        refreshIfChanged();
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long first = Math.min(from, lineCount);
+            long last = Math.min(to, lineCount);
+            if (first == last) {
+                return new ArrayList<>();
+            }
+            long start = offset(first);
+            long end = offset(last);
+            if (end - start > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Lines [" + first + ", " + last + ") are too big to be read at once");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while (bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) >= 0) {
+                // keep reading until range is complete or file ends
+            }
+            if (bytes.hasRemaining()) {
+                // file has shrunk since it was indexed
+                rebuildIndex();
+                continue;
+            }
+            return split(bytes, first, last, start);
+        }
+        throw new IOException("File keeps changing while being read: " + file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<String> split(ByteBuffer bytes, long from, long to, long start) {
+        List<String> lines = new ArrayList<>((int) (to - from));
+        int lineEnd = (int) (offset(from) - start);
+        for (long line = from; line < to; line++) {
+            int lineStart = lineEnd;
+            lineEnd = (int) (offset(line + 1) - start);
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && bytes.get(contentEnd - 1) == '\n') {
+                contentEnd--;
+                if (contentEnd > lineStart && bytes.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+            }
+            lines.add(new String(bytes.array(), lineStart, contentEnd - lineStart, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private long offset(long line) {
+        return offsetSegments[(int) (line >>> SEGMENT_OFFSETS_BITS)].get((int) (line & SEGMENT_OFFSETS_MASK));
+    }
+
+    private void refreshIfChanged() throws IOException {
+        if (Files.size(file) != indexedSize || Files.getLastModifiedTime(file).toMillis() != indexedModified) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * @return false if index is missing, stale or corrupted
+     */
+    private boolean readIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (indexChannel.size() < HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (header.getInt() != MAGIC
+                    || header.getInt() != VERSION
+                    || header.getLong() != size
+                    || header.getLong() != modified) {
+                return false;
+            }
+            long lines = header.getLong();
+            if (lines < 0 || indexChannel.size() != HEADER_SIZE + (lines + 1) * 8) {
+                return false;
+            }
+
+            long offsets = lines + 1;
+            LongBuffer[] segments = new LongBuffer[(int) ((offsets + SEGMENT_OFFSETS_MASK) >>> SEGMENT_OFFSETS_BITS)];
+            for (int segment = 0; segment < segments.length; segment++) {
+                long first = (long) segment << SEGMENT_OFFSETS_BITS;
+                long count = Math.min(SEGMENT_OFFSETS_MASK + 1, offsets - first);
+                segments[segment] = indexChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * 8, count * 8).asLongBuffer();
+            }
+            this.offsetSegments = segments;
+            this.lineCount = lines;
+            this.indexedSize = size;
+            this.indexedModified = modified;
+            return true;
+        }
+    }
+
+    /**
+     * Retries while file changes during scan (e.g. a log being appended to)
+     */
+    private void rebuildIndex() throws IOException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            writeIndex();
+            if (readIndex()) {
+                return;
+            }
+        }
+        throw new IOException("File keeps changing while being indexed: " + file);
+    }
+
+    /**
+     * Streams start of every line into a temporary file next to the index, then atomically replaces the index with it
+     */
+    private void writeIndex() throws IOException {
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Path dir = indexFile.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel indexChannel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                indexChannel.position(HEADER_SIZE);
+                ByteBuffer out = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+                ByteBuffer in = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+                long lines = 0;
+                long position = 0;
+                boolean lineStart = true;
+                while (true) {
+                    in.clear();
+                    int read = channel.read(in, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (lineStart) {
+                            if (!out.hasRemaining()) {
+                                writeFully(indexChannel, out);
+                            }
+                            out.putLong(position + i);
+                            lines++;
+                        }
+                        lineStart = in.get(i) == '\n';
+                    }
+                    position += read;
+                }
+                if (!out.hasRemaining()) {
+                    writeFully(indexChannel, out);
+                }
+                out.putLong(position);
+                writeFully(indexChannel, out);
+
+                out.putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(position)
+                        .putLong(modified)
+                        .putLong(lines)
+                        .flip();
+                while (out.hasRemaining()) {
+                    indexChannel.write(out, out.position());
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package javaday.lambdas.usage;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class IndexedLineReaderTest {
+
+    @Test
+    public void shouldJoinSameLineRangeAsSkipAndLimit() throws Exception {
+        Path dir = Files.createTempDirectory("lines");
+        Path sonnet = Files.copy(Paths.get("SonnetI.txt"), dir.resolve("SonnetI.txt"));
+        try {
+            String expected;
+            try (BufferedReader reader = Files.newBufferedReader(sonnet, StandardCharsets.UTF_8)) {
+                expected = reader.lines().skip(2).limit(2).collect(joining());
+            }
+
+            try (IndexedLineReader reader = IndexedLineReader.open(sonnet)) {
+                assertThat(String.join("", reader.lines(2, 4)), is(expected));
+                assertThat(reader.lineCount(), is((long) Files.readAllLines(sonnet, StandardCharsets.UTF_8).size()));
+            }
+            assertTrue(Files.exists(dir.resolve("SonnetI.txt" + IndexedLineReader.INDEX_SUFFIX)));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void shouldReadAnyLineRangeOfBigFile() throws Exception {
+        Random random = new Random(3);
+        List<String> lines = IntStream.range(0, 50_000)
+                .mapToObj(i -> i + (random.nextBoolean() ? " caf\u00e9" : "") + (i % 7 == 0 ? "" : " line"))
+                .collect(toList());
+        Path dir = Files.createTempDirectory("lines");
+        Path file = dir.resolve("big.txt");
+        try {
+            Files.write(file, String.join("\r\n", lines).getBytes(StandardCharsets.UTF_8));
+
+            try (IndexedLineReader reader = IndexedLineReader.open(file)) {
+                assertThat(reader.lineCount(), is(50_000L));
+                for (int query = 0; query < 200; query++) {
+                    int from = random.nextInt(lines.size());
+                    int to = Math.min(lines.size(), from + random.nextInt(20));
+                    assertThat(reader.lines(from, to), is(lines.subList(from, to)));
+                }
+                assertThat(reader.line(49_999), is(lines.get(49_999)));
+                assertThat(reader.lines(49_990, 60_000), is(lines.subList(49_990, 50_000)));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void shouldReuseSidecarAndRebuildItWhenFileChanges() throws Exception {
+        Path dir = Files.createTempDirectory("lines");
+        Path file = dir.resolve("log.txt");
+        try {
+            Files.write(file, Arrays.asList("first", "second"), StandardCharsets.UTF_8);
+            Path index = dir.resolve("log.txt" + IndexedLineReader.INDEX_SUFFIX);
+            try (IndexedLineReader reader = IndexedLineReader.open(file)) {
+                assertThat(reader.lineCount(), is(2L));
+            }
+            FileTime indexed = Files.getLastModifiedTime(index);
+
+            try (IndexedLineReader reader = IndexedLineReader.open(file)) {
+                assertThat(reader.line(1), is("second"));
+                assertThat(Files.getLastModifiedTime(index), is(indexed));
+
+                Files.write(file, Arrays.asList("third", ""), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                assertThat(reader.lineCount(), is(4L));
+                assertThat(reader.lines(1, 4), is(Arrays.asList("second", "third", "")));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void shouldRebuildSameSidecarFromManyReadersAtOnce() throws Exception {
+        List<String> lines = IntStream.range(0, 20_000).mapToObj(i -> "line " + i).collect(toList());
+        Path dir = Files.createTempDirectory("lines");
+        Path file = dir.resolve("shared.txt");
+        try {
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int reader = 0; reader < 8; reader++) {
+                    int line = reader * 1000;
+                    results.add(executor.submit(() -> {
+                        try (IndexedLineReader indexed = IndexedLineReader.open(file)) {
+                            return indexed.line(line);
+                        }
+                    }));
+                }
+                for (int reader = 0; reader < results.size(); reader++) {
+                    assertThat(results.get(reader).get(), is(lines.get(reader * 1000)));
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertThat(Files.list(dir).count(), is(2L));
+
+            Files.write(file, lines.subList(0, 10), StandardCharsets.UTF_8);
+            try (IndexedLineReader reader = IndexedLineReader.open(file)) {
+                assertThat(reader.lines(5, 1000), is(lines.subList(5, 10)));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(Path dir) throws Exception {
+        for (Path file : Files.list(dir).collect(toList())) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,95 @@
+package javaday.lambdas.usage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static javaday.lambdas.usage.LambdasHackingExercises.REGEXP;
+
+/**
+ * Prior Java 8 and Java 8 solutions of {@link LambdasHackingExercises} which don't print their result.
+ * Exercises themselves are void tests, so their pipelines are repeated here returning results to JMH.
+ * Input is SonnetI.txt repeated size times, loaded once per trial; only a reader over it is created per call.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LambdasHackingExercisesBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void loadText() throws IOException {
+        List<String> sonnet = Files.readAllLines(Paths.get("SonnetI.txt"), StandardCharsets.UTF_8);
+        text = String.join("\n", Collections.nCopies(size, String.join("\n", sonnet)));
+    }
+
+    @Benchmark
+    public int lengthOfLongestLine() throws IOException {
+        BufferedReader reader = reader();
+        int longest = 0;
+        String line = reader.readLine();
+        while (line != null) {
+            if (line.length() > longest) {
+                longest = line.length();
+            }
+            line = reader.readLine();
+        }
+        return longest;
+    }
+
+    @Benchmark
+    public int lengthOfLongestLineInJava8() {
+        return reader().lines()
+                .mapToInt(String::length)
+                .max()
+                .orElse(0);
+    }
+
+    @Benchmark
+    public Map<String, Long> wordFrequencies() throws IOException {
+        BufferedReader reader = reader();
+        Map<String, Long> map = new HashMap<>();
+        String line = reader.readLine();
+        while (line != null) {
+            for (String token : line.split(REGEXP)) {
+                if (token.length() > 0) {
+                    Long count = map.get(token);
+                    map.put(token, count == null ? 1L : count + 1);
+                }
+            }
+            line = reader.readLine();
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, Long> wordFrequenciesInJava8() {
+        return reader().lines()
+                .flatMap(line -> Stream.of(line.split(REGEXP)))
+                .filter(word -> word.length() > 0)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    private BufferedReader reader() {
+        return new BufferedReader(new StringReader(text));
+    }
+}
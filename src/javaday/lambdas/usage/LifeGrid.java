@@ -0,0 +1,15 @@
+package javaday.lambdas.usage;
+
+/**
+ * Surface shared by all Game of Life engines: original {@link GameOfLifeJava8.Grid} and its faster alternatives.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public interface LifeGrid {
+
+    void setAlive(int x, int y);
+
+    boolean isAlive(int x, int y);
+
+    void nextState();
+}
@@ -0,0 +1,204 @@
+package javaday.lambdas.usage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Line length statistics of a file computed from raw bytes, without decoding lines into Strings as
+ * {@link LambdasHackingExercises#lengthOfLongestLineInJava8()} does. File is split into newline aligned
+ * {@link FileChunk}s which are memory mapped and scanned in parallel, then partial statistics are merged.
+ *
+ * Scanner looks at 8 bytes at once: a long with no '\n' byte (usual case) is accounted with a couple of
+ * bitwise operations, only longs holding a line end are walked byte by byte. Length is counted the same
+ * way as {@link String#length()} of UTF-8 decoded line: continuation bytes don't count and
+ * 4 byte sequences count twice (surrogate pair). Lines end with '\n' or "\r\n".
+ *
+ * Lengths up to {@link #HISTOGRAM_LIMIT} are kept in a histogram, so percentiles are exact in one pass.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class LineStatistics {
+
+    static final int HISTOGRAM_LIMIT = 1 << 16;
+
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEW_LINES = 0x0A0A0A0A0A0A0A0AL;
+
+    private long lineCount;
+    private long totalLength;
+    private long longest;
+    private long[] histogram = new long[64];
+    private long[] longLines = new long[0];
+    private int longLineCount;
+
+    private LineStatistics() {
+    }
+
+    public static LineStatistics of(Path file) throws IOException {
+        return of(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static LineStatistics of(Path file, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<FileChunk> chunks = FileChunk.split(channel, parallelism, MAX_CHUNK_SIZE);
+            List<LineStatistics> chunkStatistics = chunks.parallelStream()
+                    .map(chunk -> scan(map(channel, chunk)))
+                    .collect(toList());
+
+            LineStatistics statistics = new LineStatistics();
+            chunkStatistics.forEach(statistics::merge);
+            return statistics;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChunk chunk) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static LineStatistics scan(MappedByteBuffer bytes) {
+        LineStatistics statistics = new LineStatistics();
+        int size = bytes.limit();
+        int lineStart = 0;
+        long length = 0;
+        int i = 0;
+        while (i < size) {
+            if (i + 8 <= size) {
+                long word = bytes.getLong(i);
+                if (newLineBytes(word) == 0) {
+                    length += utf16Length(word);
+                    i += 8;
+                    continue;
+                }
+            }
+            for (int end = Math.min(i + 8, size); i < end; i++) {
+                byte b = bytes.get(i);
+                if (b == '\n') {
+                    statistics.add(i > lineStart && bytes.get(i - 1) == '\r' ? length - 1 : length);
+                    length = 0;
+                    lineStart = i + 1;
+                } else {
+                    length += utf16Length(b);
+                }
+            }
+        }
+        if (size > lineStart) {
+            statistics.add(bytes.get(size - 1) == '\r' ? length - 1 : length);
+        }
+        return statistics;
+    }
+
+    /**
+     * High bit set in every byte of word equal to '\n'
+     */
+    static long newLineBytes(long word) {
+        long x = word ^ NEW_LINES;
+        return ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Every byte but 10xxxxxx continuation counts once, 11110xxx leading byte of a 4 byte sequence counts once more
+     */
+    static int utf16Length(long word) {
+        long continuation = word & ~(word << 1) & HIGH_BITS;
+        long fourBytesLead = word & (word << 1) & (word << 2) & (word << 3) & HIGH_BITS;
+        return 8 - Long.bitCount(continuation) + Long.bitCount(fourBytesLead);
+    }
+
+    private static int utf16Length(byte b) {
+        if ((b & 0xC0) == 0x80) {
+            return 0;
+        }
+        return (b & 0xF0) == 0xF0 ? 2 : 1;
+    }
+
+    private void add(long length) {
+        lineCount++;
+        totalLength += length;
+        longest = Math.max(longest, length);
+        if (length < HISTOGRAM_LIMIT) {
+            if (length >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, (int) Math.min(HISTOGRAM_LIMIT, Long.highestOneBit(length) << 1));
+            }
+            histogram[(int) length]++;
+        } else {
+            if (longLineCount == longLines.length) {
+                longLines = Arrays.copyOf(longLines, Math.max(16, longLineCount * 2));
+            }
+            longLines[longLineCount++] = length;
+        }
+    }
+
+    private LineStatistics merge(LineStatistics other) {
+        lineCount += other.lineCount;
+        totalLength += other.totalLength;
+        longest = Math.max(longest, other.longest);
+        if (other.histogram.length > histogram.length) {
+            histogram = Arrays.copyOf(histogram, other.histogram.length);
+        }
+        for (int length = 0; length < other.histogram.length; length++) {
+            histogram[length] += other.histogram[length];
+        }
+        longLines = Arrays.copyOf(longLines, longLineCount + other.longLineCount);
+        System.arraycopy(other.longLines, 0, longLines, longLineCount, other.longLineCount);
+        longLineCount += other.longLineCount;
+        return this;
+    }
+
+    public long lineCount() {
+        return lineCount;
+    }
+
+    public long longest() {
+        return longest;
+    }
+
+    public long totalLength() {
+        return totalLength;
+    }
+
+    public double mean() {
+        return lineCount == 0 ? 0 : (double) totalLength / lineCount;
+    }
+
+    /**
+     * Nearest rank percentile: the shortest length which at least percentile % of lines don't exceed
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be within [0, 100]: " + percentile);
+        }
+        if (lineCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * lineCount));
+        for (int length = 0; length < histogram.length; length++) {
+            rank -= histogram[length];
+            if (rank <= 0) {
+                return length;
+            }
+        }
+        long[] sorted = Arrays.copyOf(longLines, longLineCount);
+        Arrays.sort(sorted);
+        return sorted[(int) rank - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "lines=" + lineCount + ", longest=" + longest + ", mean=" + String.format("%.2f", mean())
+                + ", p50=" + percentile(50) + ", p90=" + percentile(90) + ", p99=" + percentile(99);
+    }
+}
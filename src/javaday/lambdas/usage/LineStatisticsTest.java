@@ -0,0 +1,78 @@
+package javaday.lambdas.usage;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class LineStatisticsTest {
+
+    @Test
+    public void shouldFindSameLongestLineAsDecodingExercise() throws Exception {
+        Path sonnet = Paths.get("SonnetI.txt");
+        List<String> lines = Files.readAllLines(sonnet, StandardCharsets.UTF_8);
+
+        LineStatistics statistics = LineStatistics.of(sonnet, 4);
+
+        assertThat(statistics.longest(), is(53L));
+        assertThat(statistics.lineCount(), is((long) lines.size()));
+        assertThat(statistics.totalLength(), is(lines.stream().mapToLong(String::length).sum()));
+    }
+
+    @Test
+    public void shouldCountUtf16LengthOfMultiByteLinesInParallel() throws Exception {
+        Random random = new Random(5);
+        String[] pieces = {"a", "bc", " ", "\u00e9", "\u20ac", "\ud83d\ude00", "\t", "xyz123"};
+        List<String> lines = IntStream.range(0, 20_000)
+                .mapToObj(i -> {
+                    StringBuilder line = new StringBuilder();
+                    int count = i % 1000 == 0 ? 30_000 : random.nextInt(40);
+                    for (int piece = 0; piece < count; piece++) {
+                        line.append(pieces[random.nextInt(pieces.length)]);
+                    }
+                    return line.toString();
+                })
+                .collect(toList());
+        Path file = Files.createTempFile("lines", ".txt");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                content.append(lines.get(i)).append(i % 2 == 0 ? "\r\n" : "\n");
+            }
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+            LineStatistics statistics = LineStatistics.of(file, 5);
+
+            long[] sorted = lines.stream().mapToLong(String::length).sorted().toArray();
+            assertThat(statistics.lineCount(), is((long) lines.size()));
+            assertThat(statistics.longest(), is(sorted[sorted.length - 1]));
+            assertThat(statistics.totalLength(), is(lines.stream().mapToLong(String::length).sum()));
+            for (double percentile : new double[]{0, 1, 50, 90, 99.9, 100}) {
+                int rank = Math.max(1, (int) Math.ceil(percentile / 100 * sorted.length));
+                assertThat("p" + percentile, statistics.percentile(percentile), is(sorted[rank - 1]));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldDetectNewLinesInsideWord() throws Exception {
+        assertThat(LineStatistics.newLineBytes(0x4142434445464748L), is(0L));
+        assertThat(LineStatistics.newLineBytes(0x410A434445460A48L), is(0x0080000000008000L));
+        assertThat(LineStatistics.newLineBytes(0x0B0A8A0A0A0A0A0AL), is(0x0080008080808080L));
+        assertThat(LineStatistics.utf16Length(0x61C3A9E282ACF09FL), is(5));
+    }
+}
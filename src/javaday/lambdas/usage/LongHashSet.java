@@ -0,0 +1,130 @@
+package javaday.lambdas.usage;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing set of primitive longs with linear probing, nothing is boxed or allocated per operation.
+ * Zero marks a free slot in the table, so zero key itself is tracked by a separate flag.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private boolean containsZero;
+    private int size;
+
+    LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    LongHashSet(int expectedSize) {
+        keys = new long[capacityFor(expectedSize)];
+    }
+
+    boolean add(long key) {
+        if (key == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            size += added ? 1 : 0;
+            return added;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Keeps allocated table, so set refilled to similar size doesn't grow again, unless the table became
+     * much bigger than what it held (say after population spike): then it shrinks to fit, so clear and
+     * forEach don't keep paying for the peak capacity
+     */
+    void clear() {
+        if (isSparse(size, keys.length)) {
+            keys = new long[capacityFor(size)];
+        } else {
+            Arrays.fill(keys, 0L);
+        }
+        containsZero = false;
+        size = 0;
+    }
+
+    void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0L);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        int mask = capacity - 1;
+        for (long key : old) {
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    static boolean isSparse(int size, int capacity) {
+        return capacity > MIN_CAPACITY && size * 8 < capacity;
+    }
+
+    static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
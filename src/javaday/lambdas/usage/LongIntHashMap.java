@@ -0,0 +1,131 @@
+package javaday.lambdas.usage;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from primitive long to int counter with linear probing, made for counting
+ * without boxing. Same as in {@link LongHashSet}, zero key lives outside of the table.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+class LongIntHashMap {
+
+    @FunctionalInterface
+    interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    private long[] keys;
+    private int[] values;
+    private boolean containsZero;
+    private int zeroValue;
+    private int size;
+
+    LongIntHashMap() {
+        this(0);
+    }
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = LongHashSet.capacityFor(expectedSize);
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * @return value after increment, missing key counts from 0
+     */
+    int increment(long key) {
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            return ++zeroValue;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return ++values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = 1;
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return 1;
+    }
+
+    /**
+     * @return value of key or 0 if it is missing
+     */
+    int get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Shrinks sparse table the same way as {@link LongHashSet#clear()}
+     */
+    void clear() {
+        if (LongHashSet.isSparse(size, keys.length)) {
+            int capacity = LongHashSet.capacityFor(size);
+            keys = new long[capacity];
+            values = new int[capacity];
+        } else {
+            Arrays.fill(keys, 0L);
+        }
+        containsZero = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    void forEach(LongIntConsumer action) {
+        if (containsZero) {
+            action.accept(0L, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = LongHashSet.slot(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package javaday.lambdas.usage;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from primitive long to object with linear probing, keys are never boxed and
+ * no entry objects are created. Same as in {@link LongHashSet}, zero key lives outside of the table.
+ * Concurrent reads are safe as long as nobody modifies the map meanwhile.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+class LongObjectHashMap<V> {
+
+    @FunctionalInterface
+    interface LongObjectConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private boolean containsZero;
+    private V zeroValue;
+    private int size;
+
+    LongObjectHashMap() {
+        this(0);
+    }
+
+    LongObjectHashMap(int expectedSize) {
+        int capacity = LongHashSet.capacityFor(expectedSize);
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * @return value of key or null if it is missing
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return previous value of key or null if it was missing
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int mask = keys.length - 1;
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Shrinks sparse table the same way as {@link LongHashSet#clear()}, values are released either way
+     */
+    void clear() {
+        if (LongHashSet.isSparse(size, keys.length)) {
+            int capacity = LongHashSet.capacityFor(size);
+            keys = new long[capacity];
+            values = new Object[capacity];
+        } else {
+            Arrays.fill(keys, 0L);
+            Arrays.fill(values, null);
+        }
+        containsZero = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(LongObjectConsumer<? super V> action) {
+        if (containsZero) {
+            action.accept(0L, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = LongHashSet.slot(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.Book;
+import javaday.lambdas.usage.ProcessingCsvFiles.BookInfo;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads book CSV files through memory mapped buffers parsing ids, expired flags and M/d/y dates
+ * straight from bytes, so the only objects created per line are the book itself and its name.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class MappedBookCsvReader {
+
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+    private static final int MAX_CACHED_SOURCES = 64;
+
+    public static void readMasterData(Path masterFile, Consumer<BookInfo> consumer) throws IOException {
+        List<byte[]> sourceBytes = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        forEachLine(masterFile, line -> {
+            int id = line.nextInt();
+            String name = line.nextString();
+            String source = line.nextCachedString(sourceBytes, sources);
+            boolean expired = line.nextInt() == 1;
+            consumer.accept(new BookInfo(id, name, source, expired));
+        });
+    }
+
+    public static void readTransactionalData(Path transactionalFile, Consumer<Book> consumer) throws IOException {
+        forEachLine(transactionalFile, line -> consumer.accept(new Book(line.nextString(), line.nextDate())));
+    }
+
+    private static void forEachLine(Path file, Consumer<Line> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (FileChunk chunk : FileChunk.split(channel, 1, MAX_MAPPING_SIZE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.size());
+                Line line = new Line(buffer);
+                while (line.next()) {
+                    consumer.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cursor over fields of the current line, reused for every line of the mapping.
+     */
+    private static class Line {
+
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int end;
+        private int nextLine;
+
+        Line(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean next() {
+            int limit = buffer.limit();
+            if (nextLine >= limit) {
+                return false;
+            }
+            position = nextLine;
+            end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            nextLine = end + 1;
+            if (end > position && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            return true;
+        }
+
+        int nextInt() {
+            int value = 0;
+            boolean negative = position < end && buffer.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            int start = position;
+            byte b;
+            while (position < end && (b = buffer.get(position)) != ',' && b != '/') {
+                if (b < '0' || b > '9') {
+                    throw new NumberFormatException("Unexpected character '" + (char) b + "' at " + position);
+                }
+                value = value * 10 + (b - '0');
+                position++;
+            }
+            if (position == start) {
+                throw new NumberFormatException("Empty number at " + start);
+            }
+            position++;
+            return negative ? -value : value;
+        }
+
+        String nextString() {
+            int start = position;
+            int length = fieldLength();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Low cardinality fields (like sources) are resolved against already seen values without decoding.
+         */
+        String nextCachedString(List<byte[]> knownBytes, List<String> knownValues) {
+            int start = position;
+            int length = fieldLength();
+            for (int i = 0; i < knownBytes.size(); i++) {
+                if (equalTo(knownBytes.get(i), start, length)) {
+                    return knownValues.get(i);
+                }
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            if (knownBytes.size() < MAX_CACHED_SOURCES) {
+                knownBytes.add(bytes);
+                knownValues.add(value);
+            }
+            return value;
+        }
+
+        LocalDate nextDate() {
+            int month = nextInt();
+            int day = nextInt();
+            int year = nextInt();
+            return LocalDate.of(year, month, day);
+        }
+
+        private int fieldLength() {
+            int start = position;
+            while (position < end && buffer.get(position) != ',') {
+                position++;
+            }
+            int length = position - start;
+            position++;
+            return length;
+        }
+
+        private boolean equalTo(byte[] bytes, int start, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Test
+    public void shouldParseTransactionalDataSameWayAsStringBasedParser() throws Exception {
+        List<String> lines = Arrays.asList("ABC,1/3/2015", "XYZ,5/30/2015", "FOO,12/10/2015");
+        Path file = Files.createTempFile("transactional", ".csv");
+        try {
+            Files.write(file, String.join("\r\n", lines).getBytes(StandardCharsets.UTF_8));
+            List<Book> books = new ArrayList<>();
+            readTransactionalData(file, books::add);
+
+            assertThat(books.size(), is(lines.size()));
+            for (int i = 0; i < lines.size(); i++) {
+                Book expected = ProcessingCsvFiles.toBook(lines.get(i));
+                assertThat(books.get(i).name, is(expected.name));
+                assertThat(books.get(i).receiveDate, is(expected.receiveDate));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldParseMasterDataAndShareSourceStrings() throws Exception {
+        Path file = Files.createTempFile("master", ".csv");
+        try {
+            Files.write(file, "111,ABC,DOMAIN1,1\n112,XYZ,DOMAIN1,0\n".getBytes(StandardCharsets.UTF_8));
+            List<BookInfo> books = new ArrayList<>();
+            readMasterData(file, books::add);
+
+            assertThat(books.size(), is(2));
+            assertThat(books.get(0).id, is(111));
+            assertThat(books.get(0).name, is("ABC"));
+            assertThat(books.get(0).isExpired, is(true));
+            assertThat(books.get(1).isExpired, is(false));
+            assertTrue(books.get(0).source == books.get(1).source);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
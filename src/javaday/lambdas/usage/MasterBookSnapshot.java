@@ -0,0 +1,384 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ColumnarMasterBookData.Dictionary;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binary snapshot of {@link ColumnarMasterBookData} which is memory mapped on startup instead of parsing CSV.
+ * Snapshot remembers size and modification time of the CSV it was built from and is ignored
+ * (and rebuilt) as soon as CSV changes or payload checksum doesn't match.
+ *
+ * Columns are stored as they are and read back in bulk, so restoring doesn't touch rows one by one.
+ * Snapshot is mapped in segments of at most {@link #SEGMENT_SIZE} bytes, so it may be bigger than 2GB.
+ *
+ * Layout: header | sources dictionary | names dictionary | row count | name count | ids | source codes
+ * | next row of same name | first row of name | last row of name | expired bitset words
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class MasterBookSnapshot {
+
+    private static final int MAGIC = 0x4D42534E;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Reads snapshot if it is still valid for masterFile, otherwise parses CSV and refreshes snapshot.
+     */
+    public static ColumnarMasterBookData load(Path masterFile, Path snapshotFile) throws IOException {
+        ColumnarMasterBookData data = read(masterFile, snapshotFile);
+        if (data == null) {
+            long masterSize = Files.size(masterFile);
+            long masterModified = Files.getLastModifiedTime(masterFile).toMillis();
+            data = ColumnarMasterBookData.load(masterFile);
+            write(data, masterFile, snapshotFile, masterSize, masterModified);
+        }
+        return data;
+    }
+
+    /**
+     * Size and modification time of masterFile must be captured before data was parsed from it,
+     * snapshot isn't persisted if masterFile has changed since then.
+     *
+     * @return false if masterFile changed and snapshot wasn't persisted
+     */
+    public static boolean write(ColumnarMasterBookData data, Path masterFile, Path snapshotFile,
+                                long masterSize, long masterModified) throws IOException {
+        Path tmp = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_SIZE);
+                SnapshotWriter out = new SnapshotWriter(channel);
+                writeDictionary(out, data.sources());
+                writeDictionary(out, data.names());
+                int rows = data.size();
+                int names = data.names().size();
+                out.putInt(rows);
+                out.putInt(names);
+                out.putInts(data.idColumn(), rows);
+                out.putInts(data.sourceCodeColumn(), rows);
+                out.putInts(data.nextRowOfSameNameColumn(), rows);
+                out.putInts(data.firstRowOfNameColumn(), names);
+                out.putInts(data.lastRowOfNameColumn(), names);
+                long[] expired = data.expiredColumn().toLongArray();
+                out.putInt(expired.length);
+                for (long word : expired) {
+                    out.putLong(word);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(masterSize)
+                        .putLong(masterModified)
+                        .putLong(out.crc.getValue())
+                        .flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            if (Files.size(masterFile) != masterSize || Files.getLastModifiedTime(masterFile).toMillis() != masterModified) {
+                return false;
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return null if snapshot is missing, stale or corrupted
+     */
+    public static ColumnarMasterBookData read(Path masterFile, Path snapshotFile) throws IOException {
+        return read(masterFile, snapshotFile, SEGMENT_SIZE);
+    }
+
+    static ColumnarMasterBookData read(Path masterFile, Path snapshotFile, int segmentSize) throws IOException {
+        if (!Files.exists(snapshotFile) || !Files.exists(masterFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC
+                    || header.getInt() != VERSION
+                    || header.getLong() != Files.size(masterFile)
+                    || header.getLong() != Files.getLastModifiedTime(masterFile).toMillis()
+                    || header.getLong() != payloadCrc(channel, segmentSize)) {
+                return null;
+            }
+
+            SnapshotReader in = new SnapshotReader(channel, HEADER_SIZE, segmentSize);
+            Dictionary sources = new Dictionary(readDictionary(in));
+            Dictionary names = new Dictionary(readDictionary(in));
+            int rows = in.getInt();
+            int nameCount = in.getInt();
+            int[] ids = in.getInts(rows);
+            int[] sourceCodes = in.getInts(rows);
+            int[] nextRowOfSameName = in.getInts(rows);
+            int[] firstRowOfName = in.getInts(nameCount);
+            int[] lastRowOfName = in.getInts(nameCount);
+            long[] expired = new long[in.getInt()];
+            for (int word = 0; word < expired.length; word++) {
+                expired[word] = in.getLong();
+            }
+            return new ColumnarMasterBookData(names, sources, rows, ids, sourceCodes, nextRowOfSameName,
+                    BitSet.valueOf(expired), firstRowOfName, lastRowOfName);
+        }
+    }
+
+    private static long payloadCrc(FileChannel channel, int segmentSize) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = channel.size();
+        for (long position = HEADER_SIZE; position < size; position += segmentSize) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position)));
+        }
+        return crc.getValue();
+    }
+
+    private static void writeDictionary(SnapshotWriter out, Dictionary dictionary) throws IOException {
+        out.putInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            byte[] bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+        }
+    }
+
+    private static String[] readDictionary(SnapshotReader in) throws IOException {
+        String[] values = new String[in.getInt()];
+        for (int code = 0; code < values.length; code++) {
+            values[code] = new String(in.getBytes(in.getInt()), StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Buffered channel writer computing CRC32 of everything written
+     */
+    private static final class SnapshotWriter {
+
+        final CRC32 crc = new CRC32();
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                ensure(4);
+                int count = Math.min(buffer.remaining() / 4, length - offset);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * 4);
+                offset += count;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over memory mapped segments, values crossing segment border are read
+     * after mapping next segment right from their position
+     */
+    private static final class SnapshotReader {
+
+        private final FileChannel channel;
+        private final int segmentSize;
+        private MappedByteBuffer segment;
+        private long segmentStart;
+
+        SnapshotReader(FileChannel channel, long position, int segmentSize) throws IOException {
+            this.channel = channel;
+            this.segmentSize = segmentSize;
+            map(position);
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return segment.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return segment.getLong();
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int offset = 0; offset < length; ) {
+                ensure(1);
+                int count = Math.min(segment.remaining(), length - offset);
+                segment.get(bytes, offset, count);
+                offset += count;
+            }
+            return bytes;
+        }
+
+        int[] getInts(int length) throws IOException {
+            int[] values = new int[length];
+            for (int offset = 0; offset < length; ) {
+                ensure(4);
+                int count = Math.min(segment.remaining() / 4, length - offset);
+                segment.asIntBuffer().get(values, offset, count);
+                segment.position(segment.position() + count * 4);
+                offset += count;
+            }
+            return values;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (segment.remaining() < bytes) {
+                map(segmentStart + segment.position());
+                if (segment.remaining() < bytes) {
+                    throw new IOException("Snapshot is truncated at " + segmentStart);
+                }
+            }
+        }
+
+        private void map(long position) throws IOException {
+            segmentStart = position;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, channel.size() - position));
+        }
+    }
+
+    @Test
+    public void shouldReloadSnapshotUntilMasterFileChanges() throws Exception {
+        Path master = Files.createTempFile("master", ".csv");
+        Path snapshot = master.resolveSibling(master.getFileName() + ".snapshot");
+        try {
+            Files.write(master, "111,ABC,DOMAIN1,1\n112,XYZ,DOMAIN1,0\n114,ABC,DOMAIN2,0\n".getBytes(StandardCharsets.UTF_8));
+            ColumnarMasterBookData loaded = load(master, snapshot);
+            assertTrue(Files.exists(snapshot));
+
+            ColumnarMasterBookData restored = read(master, snapshot);
+            assertThat(restored.size(), is(loaded.size()));
+            assertThat(restored.activeSources("ABC"), is(Arrays.asList("DOMAIN2")));
+            assertThat(Arrays.toString(restored.ids("ABC")), is("[111, 114]"));
+            assertThat(restored.isExpired("XYZ"), is(false));
+
+            Files.write(master, "115,FOO,DOMAIN3,0\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(master, FileTime.fromMillis(Files.getLastModifiedTime(master).toMillis() + 1000));
+            assertNull(read(master, snapshot));
+            assertThat(load(master, snapshot).contains("FOO"), is(true));
+            assertNotNull(read(master, snapshot));
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.delete(master);
+        }
+    }
+
+    @Test
+    public void shouldNotPersistSnapshotOfMasterFileChangedWhileParsing() throws Exception {
+        Path master = Files.createTempFile("master", ".csv");
+        Path snapshot = master.resolveSibling(master.getFileName() + ".snapshot");
+        try {
+            Files.write(master, "111,ABC,DOMAIN1,1\n".getBytes(StandardCharsets.UTF_8));
+            long size = Files.size(master);
+            long modified = Files.getLastModifiedTime(master).toMillis();
+            ColumnarMasterBookData parsed = ColumnarMasterBookData.load(master);
+
+            Files.write(master, "115,FOO,DOMAIN3,0\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            assertThat(write(parsed, master, snapshot, size, modified), is(false));
+            assertNull(read(master, snapshot));
+            try (Stream<Path> siblings = Files.list(master.getParent())) {
+                assertThat(siblings.anyMatch(path -> path.getFileName().toString()
+                        .startsWith(snapshot.getFileName().toString())), is(false));
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.delete(master);
+        }
+    }
+
+    @Test
+    public void shouldReadColumnsSpanningManySegments() throws Exception {
+        Path master = Files.createTempFile("master", ".csv");
+        Path snapshot = master.resolveSibling(master.getFileName() + ".snapshot");
+        try {
+            StringBuilder csv = new StringBuilder();
+            for (int row = 0; row < 500; row++) {
+                csv.append(1000 + row).append(",BOOK").append(row % 37).append(",DOMAIN").append(row % 3)
+                        .append(',').append(row % 5 == 0 ? 1 : 0).append('\n');
+            }
+            Files.write(master, csv.toString().getBytes(StandardCharsets.UTF_8));
+            ColumnarMasterBookData loaded = load(master, snapshot);
+
+            ColumnarMasterBookData restored = read(master, snapshot, 13);
+
+            assertThat(restored.size(), is(500));
+            for (int book = 0; book < 37; book++) {
+                String name = "BOOK" + book;
+                assertThat(Arrays.toString(restored.ids(name)), is(Arrays.toString(loaded.ids(name))));
+                assertThat(restored.activeSources(name), is(loaded.activeSources(name)));
+                assertThat(restored.isExpired(name), is(loaded.isExpired(name)));
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.delete(master);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.BookInfo;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Loads MASTER_BOOK_DATA splitting file into newline aligned chunks which are parsed in parallel
+ * and merged in file order, so grouping is exactly the same as in {@link ProcessingCsvFiles}.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class ParallelMasterDataLoader {
+
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    public static Map<String, List<BookInfo>> load(Path masterFile) throws IOException {
+        return load(masterFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static Map<String, List<BookInfo>> load(Path masterFile, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(masterFile, StandardOpenOption.READ)) {
+            List<FileChunk> chunks = FileChunk.split(channel, parallelism, MAX_CHUNK_SIZE);
+            List<Map<String, List<BookInfo>>> parsedChunks = chunks.parallelStream()
+                    .map(chunk -> parse(chunk.read(channel)))
+                    .collect(toList());
+
+            Map<String, List<BookInfo>> masterBookData = new HashMap<>();
+            for (Map<String, List<BookInfo>> parsedChunk : parsedChunks) {
+                parsedChunk.forEach((name, books) -> masterBookData.merge(name, books, (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                }));
+            }
+            return masterBookData;
+        }
+    }
+
+    private static Map<String, List<BookInfo>> parse(byte[] chunk) {
+        Map<String, List<BookInfo>> books = new LinkedHashMap<>();
+        int lineStart = 0;
+        for (int i = 0; i <= chunk.length; i++) {
+            if (i == chunk.length && lineStart == chunk.length) {
+                break;
+            }
+            if (i == chunk.length || chunk[i] == '\n') {
+                int lineEnd = i > lineStart && chunk[i - 1] == '\r' ? i - 1 : i;
+                BookInfo book = ProcessingCsvFiles.toBookInfo(new String(chunk, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+                books.computeIfAbsent(book.name, name -> new ArrayList<>()).add(book);
+                lineStart = i + 1;
+            }
+        }
+        return books;
+    }
+
+    @Test
+    public void shouldGroupMasterDataExactlyAsSequentialLoader() throws Exception {
+        String content = IntStream.range(0, 1000)
+                .mapToObj(i -> (100 + i) + ",BOOK" + (i % 37) + ",DOMAIN" + (i % 5) + "," + (i % 3 == 0 ? 1 : 0))
+                .collect(joining("\n", "", "\n"));
+        Path file = Files.createTempFile("master", ".csv");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+            Map<String, List<BookInfo>> expected = ProcessingCsvFiles.readMasterBookData(
+                    new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+            Map<String, List<BookInfo>> actual = load(file, 7);
+
+            assertThat(actual.keySet(), is(expected.keySet()));
+            expected.forEach((name, books) -> assertThat(ids(actual.get(name)), is(ids(books))));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Integer> ids(List<BookInfo> books) {
+        return books.stream().map(book -> book.id).collect(toList());
+    }
+}
@@ -1,14 +1,17 @@
 package javaday.lambdas.usage;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Collector;
 
-import static java.util.stream.Collectors.joining;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 
 /**
  * @author Oleg Tsal-Tsalko
@@ -17,71 +20,109 @@ public class ProcessingCsvFiles {
 
     static final String MASTER_BOOK_DATA = "MASTER_BOOK_DATA.csv";
     static final String TRANSACTIONAL_DATA = "TRANSACTIONAL_DATA.csv";
+    static final DateTimeFormatter RECEIVE_DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/y");
 
-    public static void main(String[] args) throws FileNotFoundException {
+    /**
+     * How books are classified, see {@link #classify(Collection, Map, boolean, boolean)}
+     */
+    enum Mode {
+        SEQUENTIAL(false, true), PARALLEL(true, true), PARALLEL_UNORDERED(true, false);
 
-        Map<String, List<BookInfo>> masterBookData = new HashMap<>();
+        final boolean parallel;
+        final boolean ordered;
 
-        Scanner scanner = new Scanner(ProcessingCsvFiles.class.getClassLoader().getResourceAsStream(MASTER_BOOK_DATA));
-        while (scanner.hasNextLine()) {
-            String[] bookDetails = scanner.nextLine().split(",");
-            BookInfo book = new BookInfo(Integer.parseInt(bookDetails[0]), bookDetails[1], bookDetails[2], ("1".equals(bookDetails[3])));
-            List<BookInfo> books = masterBookData.getOrDefault(book.name, new ArrayList<>());
-            books.add(book);
-            masterBookData.put(book.name, books);
+        Mode(boolean parallel, boolean ordered) {
+            this.parallel = parallel;
+            this.ordered = ordered;
         }
+    }
 
-        Map<String, Book> existingBooks = readTransactionalData(TRANSACTIONAL_DATA);
+    /**
+     * Arguments (all optional): report file or - for console, report format (TEXT, CSV or JSON, file only)
+     * and classification mode (SEQUENTIAL, PARALLEL or PARALLEL_UNORDERED)
+     */
+    public static void main(String[] args) throws IOException {
+
+        Map<String, List<BookInfo>> masterBookData = readMasterBookData(ProcessingCsvFiles.class.getClassLoader().getResourceAsStream(MASTER_BOOK_DATA));
+
+        Map<String, BookSummary> masterBookSummaries = summarize(masterBookData);
+        Collection<Book> existingBooks = TransactionalDataLoader.load(
+                ProcessingCsvFiles.class.getClassLoader().getResourceAsStream(TRANSACTIONAL_DATA),
+                TransactionalDataLoader.MergePolicy.DEFAULT);
+
+        Mode mode = args.length > 2 ? Mode.valueOf(args[2]) : Mode.SEQUENTIAL;
+        Classification classification = classify(existingBooks, masterBookSummaries, mode.parallel, mode.ordered);
+        try (ReportSink report = args.length > 0 && !args[0].equals("-")
+                ? BufferedReportSink.toFile(Paths.get(args[0]), args.length > 1 ? BufferedReportSink.Format.valueOf(args[1]) : BufferedReportSink.Format.TEXT)
+                : BufferedReportSink.toConsole()) {
+            writeReport(report, classification.missingBooks, classification.activeBooks, classification.expiredBooks);
+        }
+    }
 
-        List<Book> missingBooks = new ArrayList<>();
-        List<Book> activeBooks = new ArrayList<>();
-        List<Book> expiredBooks = new ArrayList<>();
-        for (Book book : existingBooks.values()) {
-            List<BookInfo> books = masterBookData.get(book.name);
-            if (books == null) {
-                missingBooks.add(book);
-            } else if (!isExpired(books)) {
-                book.setSources(books.stream()
-                        .filter(bookInfo -> !bookInfo.isExpired)
-                        .map(b -> b.source)
-                        .collect(joining("/")));
-                activeBooks.add(book);
-            } else {
-                expiredBooks.add(book);
-            }
+    /**
+     * Parallel mode classifies books on fork/join workers into per-thread {@link Classification}s which are merged at the end,
+     * ordered keeps merged lists in iteration order of books (as sequential mode does), unordered lets leaves merge in any order.
+     * Books without random access (like map values) are copied into a list first, so parallel stream splits evenly.
+     */
+    static Classification classify(Collection<Book> books, Map<String, BookSummary> masterBookSummaries, boolean parallel, boolean ordered) {
+        Collector<Book, Classification, Classification> collector = ordered
+                ? Collector.of(Classification::new, (c, book) -> c.add(book, masterBookSummaries), Classification::merge)
+                : Collector.of(Classification::new, (c, book) -> c.add(book, masterBookSummaries), Classification::merge,
+                        Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+        if (!parallel) {
+            return books.stream().collect(collector);
+        }
+        Collection<Book> indexed = books instanceof RandomAccess ? books : new ArrayList<>(books);
+        return indexed.parallelStream().collect(collector);
+    }
+
+    static void writeReport(ReportSink report, List<Book> missingBooks, List<Book> activeBooks, List<Book> expiredBooks) throws IOException {
+        report.beginSection("Missing");
+        for (Book book : missingBooks) {
+            report.row(book.name, book.receiveDate.toString());
+        }
+        report.endSection(missingBooks.size());
+        report.beginSection("Active");
+        for (Book book : activeBooks) {
+            report.row(book.name, book.sources, book.receiveDate.toString());
+        }
+        report.endSection(activeBooks.size());
+        report.beginSection("Expired");
+        for (Book book : expiredBooks) {
+            report.row(book.name);
         }
-        System.out.println("===========================================================================");
-        System.out.println("Missing bookNames:");
-        System.out.println("===========================================================================");
-        missingBooks.stream().map(book -> book.name + "," + book.receiveDate).forEach(System.out::println);
-        System.out.println("---------------------------------------------------------------------------");
-        System.out.println("Total: " + missingBooks.size());
-        System.out.println("===========================================================================");
-        System.out.println("Active bookNames:");
-        System.out.println("===========================================================================");
-        activeBooks.stream().map(book -> book.name + "," + book.sources + "," + book.receiveDate).forEach(System.out::println);
-        System.out.println("---------------------------------------------------------------------------");
-        System.out.println("Total: " + activeBooks.size());
-        System.out.println("===========================================================================");
-        System.out.println("Expired bookNames:");
-        System.out.println("===========================================================================");
-        expiredBooks.stream().map(book -> book.name).forEach(System.out::println);
-        System.out.println("---------------------------------------------------------------------------");
-        System.out.println("Total: " + expiredBooks.size());
+        report.endSection(expiredBooks.size());
     }
 
-    private static Map<String, Book> readTransactionalData(String transactionalDataFile) throws FileNotFoundException {
-        BufferedReader reader = new BufferedReader(new FileReader(ProcessingCsvFiles.class.getClassLoader().getResource(transactionalDataFile).getFile()));
-        return reader.lines().map(ProcessingCsvFiles::toBook).collect(Collectors.toMap(book -> book.name, b->b));
+    static Map<String, List<BookInfo>> readMasterBookData(InputStream masterData) {
+        Map<String, List<BookInfo>> masterBookData = new HashMap<>();
+        Scanner scanner = new Scanner(masterData);
+        while (scanner.hasNextLine()) {
+            BookInfo book = toBookInfo(scanner.nextLine());
+            List<BookInfo> books = masterBookData.getOrDefault(book.name, new ArrayList<>());
+            books.add(book);
+            masterBookData.put(book.name, books);
+        }
+        return masterBookData;
     }
 
-    private static boolean isExpired(List<BookInfo> books) {
-        return books.stream().allMatch(BookInfo::isExpired);
+    /**
+     * Compacts master data once at load time so classification is a single hash probe per book
+     */
+    static Map<String, BookSummary> summarize(Map<String, List<BookInfo>> masterBookData) {
+        Map<String, BookSummary> summaries = new HashMap<>(masterBookData.size() * 4 / 3 + 1);
+        masterBookData.forEach((name, books) -> summaries.put(name, BookSummary.of(books)));
+        return summaries;
     }
 
     public static Book toBook(String line) {
         String[] book = line.split(",");
-        return new Book(book[0], LocalDate.parse(book[1], DateTimeFormatter.ofPattern("M/d/y")));
+        return new Book(book[0], LocalDate.parse(book[1], RECEIVE_DATE_FORMAT));
+    }
+
+    public static BookInfo toBookInfo(String line) {
+        String[] bookDetails = line.split(",");
+        return new BookInfo(Integer.parseInt(bookDetails[0]), bookDetails[1], bookDetails[2], ("1".equals(bookDetails[3])));
     }
 
     static class Book {
@@ -101,6 +142,53 @@ public class ProcessingCsvFiles {
 
     }
 
+    static class Classification {
+        public final List<Book> missingBooks = new ArrayList<>();
+        public final List<Book> activeBooks = new ArrayList<>();
+        public final List<Book> expiredBooks = new ArrayList<>();
+
+        void add(Book book, Map<String, BookSummary> masterBookSummaries) {
+            BookSummary summary = masterBookSummaries.get(book.name);
+            if (summary == null) {
+                missingBooks.add(book);
+            } else if (!summary.allExpired) {
+                book.setSources(summary.activeSources);
+                activeBooks.add(book);
+            } else {
+                expiredBooks.add(book);
+            }
+        }
+
+        Classification merge(Classification other) {
+            missingBooks.addAll(other.missingBooks);
+            activeBooks.addAll(other.activeBooks);
+            expiredBooks.addAll(other.expiredBooks);
+            return this;
+        }
+    }
+
+    static class BookSummary {
+        public final boolean allExpired;
+        public final String activeSources;
+
+        BookSummary(boolean allExpired, String activeSources) {
+            this.allExpired = allExpired;
+            this.activeSources = activeSources;
+        }
+
+        static BookSummary of(List<BookInfo> books) {
+            StringJoiner activeSources = new StringJoiner("/");
+            boolean allExpired = true;
+            for (BookInfo book : books) {
+                if (!book.isExpired) {
+                    activeSources.add(book.source);
+                    allExpired = false;
+                }
+            }
+            return new BookSummary(allExpired, allExpired ? null : activeSources.toString());
+        }
+    }
+
     static class BookInfo {
         public final int id;
         public final String name;
@@ -118,4 +206,30 @@ public class ProcessingCsvFiles {
             isExpired = expired;
         }
     }
+
+    @Test
+    public void shouldClassifyInParallelPreservingOrder() throws Exception {
+        Map<String, List<BookInfo>> masterBookData = new HashMap<>();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String name = "BOOK" + i;
+            if (i % 3 != 0) {
+                masterBookData.put(name, Collections.singletonList(new BookInfo(i, name, "DOMAIN" + (i % 7), i % 3 == 1)));
+            }
+            books.add(new Book(name, LocalDate.of(2015, 1, 1).plusDays(i % 365)));
+        }
+        Map<String, BookSummary> summaries = summarize(masterBookData);
+
+        Classification sequential = classify(books, summaries, false, true);
+        Classification parallel = classify(books, summaries, true, true);
+        Classification unordered = classify(books, summaries, true, false);
+        Classification notRandomAccess = classify(new LinkedHashSet<>(books), summaries, true, true);
+
+        assertThat(parallel.missingBooks, is(sequential.missingBooks));
+        assertThat(parallel.activeBooks, is(sequential.activeBooks));
+        assertThat(parallel.expiredBooks, is(sequential.expiredBooks));
+        assertThat(notRandomAccess.activeBooks, is(sequential.activeBooks));
+        assertThat(new HashSet<>(unordered.activeBooks), is(new HashSet<>(sequential.activeBooks)));
+        assertThat(sequential.missingBooks.size() + sequential.activeBooks.size() + sequential.expiredBooks.size(), is(books.size()));
+    }
 }
@@ -0,0 +1,18 @@
+package javaday.lambdas.usage;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for reconciliation report which is written section by section, row by row.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public interface ReportSink extends Closeable {
+
+    void beginSection(String name) throws IOException;
+
+    void row(CharSequence... fields) throws IOException;
+
+    void endSection(long total) throws IOException;
+}
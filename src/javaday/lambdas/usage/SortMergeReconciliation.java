@@ -0,0 +1,193 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.Book;
+import javaday.lambdas.usage.ProcessingCsvFiles.BookInfo;
+import javaday.lambdas.usage.ProcessingCsvFiles.BookSummary;
+import javaday.lambdas.usage.TransactionalDataLoader.MergePolicy;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Sort-merge join flavour of {@link ProcessingCsvFiles}: both inputs have to be sorted by book name,
+ * so only master records of a single name are held in memory at any moment and results are
+ * emitted to {@link Listener} as soon as each transactional book is classified.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class SortMergeReconciliation {
+
+    public interface Listener {
+        void missing(Book book);
+
+        void active(Book book);
+
+        void expired(Book book);
+    }
+
+    public static class Totals {
+        public long missing;
+        public long active;
+        public long expired;
+    }
+
+    /**
+     * Repeated transactional names are merged with {@link MergePolicy#DEFAULT}, same as {@link ProcessingCsvFiles#main} does
+     */
+    public static Totals reconcile(Path masterFile, Path transactionalFile, Listener listener) throws IOException {
+        return reconcile(masterFile, transactionalFile, MergePolicy.DEFAULT, listener);
+    }
+
+    public static Totals reconcile(Path masterFile, Path transactionalFile, MergePolicy policy, Listener listener) throws IOException {
+        try (Stream<String> master = Files.lines(masterFile, StandardCharsets.UTF_8);
+             Stream<Book> transactional = TransactionalDataLoader.mergeAdjacent(TransactionalDataLoader.stream(transactionalFile), policy)) {
+            return reconcile(master.map(ProcessingCsvFiles::toBookInfo).iterator(), transactional.iterator(), listener);
+        }
+    }
+
+    public static Totals reconcile(Iterator<BookInfo> master, Iterator<Book> transactional, Listener listener) {
+        Totals totals = new Totals();
+        MasterGroups groups = new MasterGroups(master);
+        String previousName = null;
+        while (transactional.hasNext()) {
+            Book book = transactional.next();
+            if (previousName != null && previousName.compareTo(book.name) > 0) {
+                throw new IllegalStateException("Transactional data is not sorted by name: " + previousName + " before " + book.name);
+            }
+            previousName = book.name;
+            if (!groups.advanceTo(book.name)) {
+                totals.missing++;
+                listener.missing(book);
+            } else if (!groups.summary.allExpired) {
+                book.setSources(groups.summary.activeSources);
+                totals.active++;
+                listener.active(book);
+            } else {
+                totals.expired++;
+                listener.expired(book);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Walks master records group by group, keeping only the summary of the current name.
+     */
+    private static class MasterGroups {
+
+        private final Iterator<BookInfo> master;
+        private BookInfo next;
+        private String name;
+        private BookSummary summary;
+
+        MasterGroups(Iterator<BookInfo> master) {
+            this.master = master;
+            this.next = master.hasNext() ? master.next() : null;
+        }
+
+        boolean advanceTo(String bookName) {
+            while (name == null || name.compareTo(bookName) < 0) {
+                if (next == null) {
+                    return false;
+                }
+                readGroup();
+            }
+            return name.equals(bookName);
+        }
+
+        private void readGroup() {
+            name = next.name;
+            List<BookInfo> group = new ArrayList<>();
+            while (next != null && next.name.equals(name)) {
+                group.add(next);
+                BookInfo current = next;
+                next = master.hasNext() ? master.next() : null;
+                if (next != null && current.name.compareTo(next.name) > 0) {
+                    throw new IllegalStateException("Master data is not sorted by name: " + current.name + " before " + next.name);
+                }
+            }
+            summary = BookSummary.of(group);
+        }
+    }
+
+    @Test
+    public void shouldClassifySortedInputsInSinglePass() throws Exception {
+        List<BookInfo> master = Stream.of(
+                "111,ABC,DOMAIN1,1",
+                "114,ABC,DOMAIN2,1",
+                "113,BLA,DOMAIN2,1",
+                "112,XYZ,DOMAIN1,0",
+                "115,XYZ,DOMAIN2,0")
+                .map(ProcessingCsvFiles::toBookInfo)
+                .collect(toList());
+        List<Book> transactional = Arrays.asList(
+                new Book("ABC", LocalDate.of(2015, 1, 3)),
+                new Book("FOO", LocalDate.of(2015, 6, 10)),
+                new Book("XYZ", LocalDate.of(2015, 5, 30)));
+
+        List<String> events = new ArrayList<>();
+        Totals totals = reconcile(master.iterator(), transactional.iterator(), new Listener() {
+            public void missing(Book book) { events.add("missing:" + book.name); }
+            public void active(Book book) { events.add("active:" + book.name + ":" + book.sources); }
+            public void expired(Book book) { events.add("expired:" + book.name); }
+        });
+
+        assertThat(events, is(Arrays.asList("expired:ABC", "missing:FOO", "active:XYZ:DOMAIN1/DOMAIN2")));
+        assertThat(totals.missing + totals.active + totals.expired, is(3L));
+    }
+
+    @Test
+    public void shouldCountRepeatedNameOnceLikeInMemoryClassification() throws Exception {
+        Path master = Files.createTempFile("master", ".csv");
+        Path transactional = Files.createTempFile("transactional", ".csv");
+        try {
+            Files.write(master, Arrays.asList("111,ABC,DOMAIN1,0", "112,XYZ,DOMAIN1,1"), StandardCharsets.UTF_8);
+            Files.write(transactional, Arrays.asList("ABC,1/3/2015", "ABC,2/3/2015", "FOO,6/10/2015", "XYZ,5/30/2015"), StandardCharsets.UTF_8);
+            List<String> events = new ArrayList<>();
+            Totals totals = reconcile(master, transactional, new Listener() {
+                public void missing(Book book) { events.add("missing:" + book.name); }
+                public void active(Book book) { events.add("active:" + book.name + ":" + book.receiveDate); }
+                public void expired(Book book) { events.add("expired:" + book.name); }
+            });
+
+            ProcessingCsvFiles.Classification classification;
+            try (InputStream masterData = Files.newInputStream(master);
+                 InputStream transactionalData = Files.newInputStream(transactional)) {
+                classification = ProcessingCsvFiles.classify(
+                        TransactionalDataLoader.load(transactionalData, MergePolicy.DEFAULT),
+                        ProcessingCsvFiles.summarize(ProcessingCsvFiles.readMasterBookData(masterData)), false, true);
+            }
+
+            assertThat(events, is(Arrays.asList("active:ABC:2015-02-03", "missing:FOO", "expired:XYZ")));
+            assertThat(totals.active, is((long) classification.activeBooks.size()));
+            assertThat(totals.missing, is((long) classification.missingBooks.size()));
+            assertThat(totals.expired, is((long) classification.expiredBooks.size()));
+        } finally {
+            Files.delete(master);
+            Files.delete(transactional);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUnsortedTransactionalData() throws Exception {
+        List<Book> transactional = Arrays.asList(
+                new Book("XYZ", LocalDate.of(2015, 5, 30)),
+                new Book("ABC", LocalDate.of(2015, 1, 3)));
+        reconcile(Collections.<BookInfo>emptyIterator(), transactional.iterator(), new Listener() {
+            public void missing(Book book) {}
+            public void active(Book book) {}
+            public void expired(Book book) {}
+        });
+    }
+}
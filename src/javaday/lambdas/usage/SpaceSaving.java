@@ -0,0 +1,230 @@
+package javaday.lambdas.usage;
+
+import java.util.*;
+import java.util.stream.Collector;
+
+/**
+ * Space-Saving summary of a stream: at most capacity items are monitored, and when a new item arrives
+ * with all counters taken it replaces the item with the lowest count, inheriting that count as its error.
+ * Memory stays bounded by capacity however long the stream is, and every estimate overcounts by at most
+ * its error, which is never more than total / capacity. Any item occurring more than total / capacity
+ * times is guaranteed to be monitored.
+ *
+ * {@link #topK(int, int)} makes it a {@link Collector}, so it can replace groupingBy + sort at the end of
+ * {@link LambdasHackingExercises} style word pipelines. Summaries of parallel parts are merged
+ * the mergeable summaries way: item missing on one side gets that side's minimum as count and error.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class SpaceSaving<T> {
+
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+    private final Counter<T>[] heap;
+    private int size;
+    private long total;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = (Counter<T>[]) new Counter<?>[capacity];
+    }
+
+    /**
+     * @param k        number of most frequent items to report
+     * @param capacity number of monitored items, the bigger it is comparing to k the smaller are error bounds
+     */
+    public static <T> Collector<T, ?, HeavyHitters<T>> topK(int k, int capacity) {
+        if (k > capacity) {
+            throw new IllegalArgumentException("Can't report top " + k + " monitoring only " + capacity + " items");
+        }
+        return Collector.of(
+                () -> new SpaceSaving<T>(capacity),
+                SpaceSaving::offer,
+                SpaceSaving::merge,
+                summary -> summary.top(k),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    public void offer(T item) {
+        total++;
+        Counter<T> counter = counters.get(item);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+        } else if (size < capacity) {
+            counter = new Counter<>(item, 1, 0);
+            counters.put(item, counter);
+            heap[size] = counter;
+            counter.index = size++;
+            siftUp(counter.index);
+        } else {
+            Counter<T> evicted = heap[0];
+            counters.remove(evicted.item);
+            evicted.item = item;
+            evicted.error = evicted.count;
+            evicted.count++;
+            counters.put(item, evicted);
+            siftDown(0);
+        }
+    }
+
+    public SpaceSaving<T> merge(SpaceSaving<T> other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        List<Counter<T>> merged = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            Counter<T> counter = heap[i];
+            Counter<T> match = other.counters.get(counter.item);
+            merged.add(match == null
+                    ? new Counter<>(counter.item, counter.count + otherMin, counter.error + otherMin)
+                    : new Counter<>(counter.item, counter.count + match.count, counter.error + match.error));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter<T> counter = other.heap[i];
+            if (!counters.containsKey(counter.item)) {
+                merged.add(new Counter<>(counter.item, counter.count + thisMin, counter.error + thisMin));
+            }
+        }
+        merged.sort(Comparator.comparingLong((Counter<T> counter) -> counter.count).reversed());
+
+        counters.clear();
+        size = 0;
+        for (Counter<T> counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            counters.put(counter.item, counter);
+            heap[size] = counter;
+            counter.index = size++;
+            siftUp(counter.index);
+        }
+        total += other.total;
+        return this;
+    }
+
+    /**
+     * Item is guaranteed to be among real top k when even its lowest possible count
+     * is above the highest possible count of every item not reported
+     */
+    public HeavyHitters<T> top(int k) {
+        List<Counter<T>> sorted = new ArrayList<>(Arrays.asList(heap).subList(0, size));
+        sorted.sort(Comparator.comparingLong((Counter<T> counter) -> counter.count).reversed());
+        long unreportedMax = sorted.size() > k ? sorted.get(k).count : minCount();
+        List<Estimate<T>> estimates = new ArrayList<>();
+        for (Counter<T> counter : sorted.subList(0, Math.min(k, sorted.size()))) {
+            estimates.add(new Estimate<>(counter.item, counter.count, counter.error,
+                    counter.count - counter.error >= unreportedMax));
+        }
+        return new HeavyHitters<>(estimates, total, minCount());
+    }
+
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Upper bound of count of any item which is not monitored
+     */
+    private long minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    private void siftUp(int index) {
+        Counter<T> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<T> counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<T> counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter<T> {
+        T item;
+        long count;
+        long error;
+        int index;
+
+        Counter(T item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Real count of item is within [count - error, count]
+     */
+    public static final class Estimate<T> {
+        public final T item;
+        public final long count;
+        public final long error;
+        public final boolean guaranteed;
+
+        Estimate(T item, long count, long error, boolean guaranteed) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+            this.guaranteed = guaranteed;
+        }
+
+        public long lowerBound() {
+            return count - error;
+        }
+
+        @Override
+        public String toString() {
+            return item + "=" + count + (error > 0 ? "(-" + error + ")" : "") + (guaranteed ? "" : "?");
+        }
+    }
+
+    /**
+     * Most frequent items by estimated count, together with total number of items seen
+     * and the highest count any item missing from the summary could have
+     */
+    public static final class HeavyHitters<T> {
+        public final List<Estimate<T>> top;
+        public final long total;
+        public final long maxUnmonitoredCount;
+
+        HeavyHitters(List<Estimate<T>> top, long total, long maxUnmonitoredCount) {
+            this.top = Collections.unmodifiableList(top);
+            this.total = total;
+            this.maxUnmonitoredCount = maxUnmonitoredCount;
+        }
+
+        @Override
+        public String toString() {
+            return top + " of " + total + ", unmonitored items seen at most " + maxUnmonitoredCount + " times";
+        }
+    }
+}
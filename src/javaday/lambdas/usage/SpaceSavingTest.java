@@ -0,0 +1,82 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.SpaceSaving.Estimate;
+import javaday.lambdas.usage.SpaceSaving.HeavyHitters;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Oleg Tsal-Tsalko
+ */
+public class SpaceSavingTest {
+
+    @Test
+    public void shouldBeExactWhileAllWordsFitIntoCapacity() throws Exception {
+        HeavyHitters<String> hitters;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get("SonnetI.txt"), StandardCharsets.UTF_8)) {
+            hitters = reader.lines()
+                    .flatMap(line -> Stream.of(line.split(LambdasHackingExercises.REGEXP)))
+                    .filter(word -> word.length() > 0)
+                    .collect(SpaceSaving.topK(1, 1000));
+        }
+
+        assertThat(hitters.top.size(), is(1));
+        assertThat(hitters.top.get(0).item, is("the"));
+        assertThat(hitters.top.get(0).count, is(6L));
+        assertThat(hitters.top.get(0).error, is(0L));
+        assertThat(hitters.top.get(0).guaranteed, is(true));
+        assertThat(hitters.maxUnmonitoredCount, is(0L));
+    }
+
+    @Test
+    public void shouldBoundErrorsOfSkewedParallelStream() throws Exception {
+        Random random = new Random(11);
+        List<Integer> items = IntStream.range(0, 200_000)
+                .mapToObj(i -> (int) Math.floor(Math.pow(random.nextDouble(), 4) * 10_000))
+                .collect(toList());
+        Map<Integer, Long> exact = items.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        int capacity = 200;
+
+        HeavyHitters<Integer> hitters = items.parallelStream().collect(SpaceSaving.topK(10, capacity));
+
+        assertThat(hitters.total, is((long) items.size()));
+        assertThat(hitters.top.size(), is(10));
+        for (Estimate<Integer> estimate : hitters.top) {
+            long real = exact.get(estimate.item);
+            assertThat(estimate + " overcounts", estimate.count >= real, is(true));
+            assertThat(estimate + " error bound", estimate.lowerBound() <= real, is(true));
+        }
+        assertThat(hitters.top.get(0).item, is(0));
+        assertThat(hitters.top.get(0).guaranteed, is(true));
+    }
+
+    @Test
+    public void shouldAlwaysMonitorItemsAboveTotalByCapacity() throws Exception {
+        SpaceSaving<String> summary = new SpaceSaving<>(4);
+        for (int i = 0; i < 1000; i++) {
+            summary.offer(i % 3 == 0 ? "frequent" : "rare" + i);
+        }
+
+        HeavyHitters<String> hitters = summary.top(1);
+
+        assertThat(hitters.top.get(0).item, is("frequent"));
+        assertThat(hitters.top.get(0).lowerBound() <= 334, is(true));
+        assertThat(hitters.maxUnmonitoredCount <= summary.total() / 4, is(true));
+    }
+}
@@ -0,0 +1,320 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.ForkJoinRangeAggregator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+/**
+ * Bit packed {@link LifeGrid}: unbounded plane is a sparse map of 64x64 tiles, every tile row is one long
+ * where bit x is cell x. Next generation of a whole row is computed at once by adding eight
+ * shifted neighbour rows with bitwise full adders instead of counting neighbours cell by cell.
+ *
+ * Only active region is recomputed: every tile carries a mask of rows changed by previous generation,
+ * and a row is evaluated again only if it or a row next to it (in this or a neighbour tile) has changed.
+ * Tiles with no changes around them are carried over to the next generation as they are.
+ *
+ * Tiles and candidates are keyed by primitive long in open addressing tables and tile arrays are recycled,
+ * so once tables have grown to the size of the pattern, sequential {@link #nextState()} allocates nothing.
+ * Parallel stepping only allocates fork/join tasks.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class TiledLifeGrid implements LifeGrid {
+
+    static final int TILE_BITS = 6;
+    static final int TILE_SIZE = 1 << TILE_BITS;
+    static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+     * Slot after the last row holding mask of rows changed by previous generation
+     */
+    static final int CHANGES = TILE_SIZE;
+
+    private static final long[] EMPTY_TILE = new long[TILE_SIZE + 1];
+
+    /**
+     * Heavy enough work per tile to let every single tile be a fork/join leaf
+     */
+    private static final int MIN_TILES_PER_LEAF = 1;
+
+    private final ForkJoinPool pool;
+
+    private LongObjectHashMap<long[]> tiles = new LongObjectHashMap<>();
+    private LongObjectHashMap<long[]> nextTiles = new LongObjectHashMap<>();
+    private final Deque<long[]> freeTiles = new ArrayDeque<>();
+    private final LongHashSet candidates = new LongHashSet();
+    private long[] candidateKeys = new long[0];
+    private long[][] candidateTargets = new long[0][];
+    private int candidateCount;
+    private long cellsExamined;
+
+    private final LongObjectHashMap.LongObjectConsumer<long[]> addNeighbourhoodIfChanged = (key, tile) -> {
+        if (tile[CHANGES] != 0) {
+            int tx = tileX(key);
+            int ty = tileY(key);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    candidates.add(tileKey(tx + dx, ty + dy));
+                }
+            }
+        }
+    };
+    private final LongConsumer prepareCandidate = key -> {
+        candidateKeys[candidateCount] = key;
+        candidateTargets[candidateCount] = acquireTile();
+        candidateCount++;
+    };
+    private final LongObjectHashMap.LongObjectConsumer<long[]> carryOverOrFree = (key, tile) -> {
+        if (candidates.contains(key) || isEmpty(tile)) {
+            freeTiles.push(tile);
+        } else {
+            nextTiles.put(key, tile);
+        }
+    };
+
+    public TiledLifeGrid() {
+        this(null);
+    }
+
+    /**
+     * Tiles of every generation are computed in parallel on given pool, each worker only reads
+     * edge rows (halo) of neighbour tiles from current generation and writes its own tile of the next one
+     */
+    public TiledLifeGrid(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void setAlive(int x, int y) {
+        long key = tileKey(x >> TILE_BITS, y >> TILE_BITS);
+        long[] tile = tiles.get(key);
+        if (tile == null) {
+            tile = acquireTile();
+            tiles.put(key, tile);
+        }
+        tile[y & TILE_MASK] |= 1L << (x & TILE_MASK);
+        tile[CHANGES] |= 1L << (y & TILE_MASK);
+    }
+
+    @Override
+    public boolean isAlive(int x, int y) {
+        long[] tile = tiles.get(tileKey(x >> TILE_BITS, y >> TILE_BITS));
+        return tile != null && (tile[y & TILE_MASK] & (1L << (x & TILE_MASK))) != 0;
+    }
+
+    /**
+     * Double buffered: tile arrays of previous generation are recycled for the next one
+     */
+    @Override
+    public void nextState() {
+        int count = collectCandidates();
+        if (pool == null) {
+            long rows = 0;
+            for (int i = 0; i < count; i++) {
+                rows += nextTile(candidateKeys[i], candidateTargets[i]);
+            }
+            cellsExamined = rows * TILE_SIZE;
+        } else {
+            cellsExamined = TILE_SIZE * ForkJoinRangeAggregator.sum(pool, count, MIN_TILES_PER_LEAF, (from, to) -> {
+                long rows = 0;
+                for (int i = from; i < to; i++) {
+                    rows += nextTile(candidateKeys[i], candidateTargets[i]);
+                }
+                return rows;
+            });
+        }
+
+        nextTiles.clear();
+        for (int i = 0; i < count; i++) {
+            long[] target = candidateTargets[i];
+            // Tile which has just died out is kept one more generation so neighbours see its changes
+            if (target[CHANGES] != 0 || !isEmpty(target)) {
+                nextTiles.put(candidateKeys[i], target);
+            } else {
+                freeTiles.push(target);
+            }
+            candidateTargets[i] = null;
+        }
+        tiles.forEach(carryOverOrFree);
+        candidates.clear();
+        tiles.clear();
+        LongObjectHashMap<long[]> current = tiles;
+        tiles = nextTiles;
+        nextTiles = current;
+    }
+
+    /**
+     * Number of cells evaluated by last {@link #nextState()}, cells of stable regions are not counted
+     */
+    public long cellsExamined() {
+        return cellsExamined;
+    }
+
+    public long population() {
+        long[] population = {0};
+        tiles.forEach((key, tile) -> {
+            for (int y = 0; y < TILE_SIZE; y++) {
+                population[0] += Long.bitCount(tile[y]);
+            }
+        });
+        return population[0];
+    }
+
+    /**
+     * Every changed tile and its eight neighbours, since changes affect cells across tile border
+     *
+     * @return number of candidates collected into candidateKeys with target tile arrays ready
+     */
+    private int collectCandidates() {
+        tiles.forEach(addNeighbourhoodIfChanged);
+        int count = candidates.size();
+        if (candidateKeys.length < count) {
+            candidateKeys = new long[count * 2];
+            candidateTargets = new long[count * 2][];
+        }
+        candidateCount = 0;
+        candidates.forEach(prepareCandidate);
+        return count;
+    }
+
+    private static boolean isEmpty(long[] tile) {
+        for (int y = 0; y < TILE_SIZE; y++) {
+            if (tile[y] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] acquireTile() {
+        long[] tile = freeTiles.poll();
+        if (tile == null) {
+            return new long[TILE_SIZE + 1];
+        }
+        Arrays.fill(tile, 0L);
+        return tile;
+    }
+
+    /**
+     * Writes next generation of tile into target together with mask of changed rows.
+     * Rows with no changes in or next to them can't change now, so they are copied as they are.
+     *
+     * @return number of rows evaluated
+     */
+    int nextTile(long key, long[] target) {
+        int tx = tileX(key);
+        int ty = tileY(key);
+        long[] c = tile(tx, ty);
+        long[] n = tile(tx, ty - 1);
+        long[] s = tile(tx, ty + 1);
+        long[] w = tile(tx - 1, ty);
+        long[] e = tile(tx + 1, ty);
+        long[] nw = tile(tx - 1, ty - 1);
+        long[] ne = tile(tx + 1, ty - 1);
+        long[] sw = tile(tx - 1, ty + 1);
+        long[] se = tile(tx + 1, ty + 1);
+
+        long changed = c[CHANGES] | w[CHANGES] | e[CHANGES];
+        long active = changed | (changed << 1) | (changed >>> 1);
+        if (((n[CHANGES] | nw[CHANGES] | ne[CHANGES]) >>> TILE_MASK) != 0) {
+            active |= 1L;
+        }
+        if (((s[CHANGES] | sw[CHANGES] | se[CHANGES]) & 1L) != 0) {
+            active |= 1L << TILE_MASK;
+        }
+
+        long changes = 0;
+        for (int y = 0; y < TILE_SIZE; y++) {
+            if ((active & (1L << y)) == 0) {
+                target[y] = c[y];
+                continue;
+            }
+            long above, aboveW, aboveE, below, belowW, belowE;
+            if (y > 0) {
+                above = c[y - 1];
+                aboveW = w[y - 1];
+                aboveE = e[y - 1];
+            } else {
+                above = n[TILE_MASK];
+                aboveW = nw[TILE_MASK];
+                aboveE = ne[TILE_MASK];
+            }
+            if (y < TILE_MASK) {
+                below = c[y + 1];
+                belowW = w[y + 1];
+                belowE = e[y + 1];
+            } else {
+                below = s[0];
+                belowW = sw[0];
+                belowE = se[0];
+            }
+            target[y] = nextRow(above, aboveW, aboveE, c[y], w[y], e[y], below, belowW, belowE);
+            if (target[y] != c[y]) {
+                changes |= 1L << y;
+            }
+        }
+        target[CHANGES] = changes;
+        return Long.bitCount(active);
+    }
+
+    /**
+     * Bit sliced neighbour count built from carry-save adders: ones, twos and fours are bits of 64 parallel
+     * counters (count 8 overflows to 0, which is as dead as 0). Cell lives with count 3, or with count 2 if alive now.
+     */
+    static long nextRow(long above, long aboveW, long aboveE,
+                        long row, long rowW, long rowE,
+                        long below, long belowW, long belowE) {
+        long a = west(above, aboveW), b = above, c = east(above, aboveE);
+        long d = west(row, rowW), e = east(row, rowE);
+        long f = west(below, belowW), g = below, h = east(below, belowE);
+
+        long onesAbc = a ^ b ^ c, twosAbc = (a & b) | (c & (a ^ b));
+        long onesDef = d ^ e ^ f, twosDef = (d & e) | (f & (d ^ e));
+        long onesGh = g ^ h, twosGh = g & h;
+
+        long ones = onesAbc ^ onesDef ^ onesGh;
+        long twosFromOnes = (onesAbc & onesDef) | (onesGh & (onesAbc ^ onesDef));
+
+        long twosPartial = twosAbc ^ twosDef ^ twosGh;
+        long foursPartial = (twosAbc & twosDef) | (twosGh & (twosAbc ^ twosDef));
+        long twos = twosPartial ^ twosFromOnes;
+        long fours = foursPartial ^ (twosPartial & twosFromOnes);
+
+        return twos & ~fours & (ones | row);
+    }
+
+    /**
+     * Bit x of result is the cell to the west (x - 1) of cell x
+     */
+    private static long west(long row, long westRow) {
+        return (row << 1) | (westRow >>> TILE_MASK);
+    }
+
+    /**
+     * Bit x of result is the cell to the east (x + 1) of cell x
+     */
+    private static long east(long row, long eastRow) {
+        return (row >>> 1) | (eastRow << TILE_MASK);
+    }
+
+    long[] tile(int tx, int ty) {
+        long[] tile = tiles.get(tileKey(tx, ty));
+        return tile == null ? EMPTY_TILE : tile;
+    }
+
+    static long tileKey(int tx, int ty) {
+        return ((long) ty << 32) | (tx & 0xFFFFFFFFL);
+    }
+
+    static int tileX(long key) {
+        return (int) key;
+    }
+
+    static int tileY(long key) {
+        return (int) (key >> 32);
+    }
+}
@@ -0,0 +1,146 @@
+package javaday.lambdas.usage;
+
+import javaday.lambdas.usage.ProcessingCsvFiles.Book;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Reads TRANSACTIONAL_DATA from any {@link InputStream} or {@link Path} (so it works for resources inside a jar too)
+ * resolving repeated book names with {@link MergePolicy} instead of failing like {@code Collectors.toMap} does.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class TransactionalDataLoader {
+
+    public enum MergePolicy {
+        LATEST_RECEIVE_DATE((left, right) -> right.receiveDate.isBefore(left.receiveDate) ? left : right),
+        EARLIEST_RECEIVE_DATE((left, right) -> right.receiveDate.isBefore(left.receiveDate) ? right : left),
+        KEEP_ALL(null);
+
+        /**
+         * Policy of every reconciliation path which isn't given one explicitly, so they all report same totals
+         */
+        public static final MergePolicy DEFAULT = LATEST_RECEIVE_DATE;
+
+        private final BinaryOperator<Book> merger;
+
+        MergePolicy(BinaryOperator<Book> merger) {
+            this.merger = merger;
+        }
+    }
+
+    /**
+     * Lazily parsed books, stream has to be closed to release underlying input.
+     */
+    public static Stream<Book> stream(InputStream transactionalData) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(transactionalData, StandardCharsets.UTF_8));
+        return reader.lines()
+                .map(ProcessingCsvFiles::toBook)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    public static Stream<Book> stream(Path transactionalData) throws IOException {
+        return stream(Files.newInputStream(transactionalData));
+    }
+
+    /**
+     * Loads whole input keeping books in order of first occurrence of their names.
+     */
+    public static Collection<Book> load(InputStream transactionalData, MergePolicy policy) {
+        try (Stream<Book> books = stream(transactionalData)) {
+            if (policy == MergePolicy.KEEP_ALL) {
+                return books.collect(toList());
+            }
+            Map<String, Book> merged = new LinkedHashMap<>();
+            books.forEach(book -> merged.merge(book.name, book, policy.merger));
+            return merged.values();
+        }
+    }
+
+    /**
+     * Single pass merge for input sorted by name (as required by {@link SortMergeReconciliation}),
+     * only one book is held in memory since duplicates are adjacent.
+     */
+    public static Stream<Book> mergeAdjacent(Stream<Book> sortedBooks, MergePolicy policy) {
+        if (policy == MergePolicy.KEEP_ALL) {
+            return sortedBooks;
+        }
+        Iterator<Book> books = sortedBooks.iterator();
+        Iterator<Book> merged = new Iterator<Book>() {
+            private Book pending = books.hasNext() ? books.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            @Override
+            public Book next() {
+                if (pending == null) {
+                    throw new NoSuchElementException();
+                }
+                Book result = pending;
+                pending = null;
+                while (books.hasNext()) {
+                    Book book = books.next();
+                    if (!book.name.equals(result.name)) {
+                        pending = book;
+                        break;
+                    }
+                    result = policy.merger.apply(result, book);
+                }
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(sortedBooks::close);
+    }
+
+    @Test
+    public void shouldResolveDuplicateNamesWithMergePolicy() throws Exception {
+        String data = "ABC,1/3/2015\nXYZ,5/30/2015\nABC,2/1/2015\nABC,1/1/2015";
+
+        assertThat(receiveDates(load(input(data), MergePolicy.LATEST_RECEIVE_DATE)), is(Arrays.asList("ABC:2015-02-01", "XYZ:2015-05-30")));
+        assertThat(receiveDates(load(input(data), MergePolicy.EARLIEST_RECEIVE_DATE)), is(Arrays.asList("ABC:2015-01-01", "XYZ:2015-05-30")));
+        assertThat(load(input(data), MergePolicy.KEEP_ALL).size(), is(4));
+    }
+
+    @Test
+    public void shouldMergeAdjacentDuplicatesOfSortedStream() throws Exception {
+        String sorted = "ABC,1/3/2015\nABC,2/1/2015\nFOO,6/10/2015\nXYZ,5/30/2015\nXYZ,5/1/2015";
+        try (Stream<Book> books = mergeAdjacent(stream(input(sorted)), MergePolicy.LATEST_RECEIVE_DATE)) {
+            assertThat(receiveDates(books.collect(toList())), is(Arrays.asList("ABC:2015-02-01", "FOO:2015-06-10", "XYZ:2015-05-30")));
+        }
+    }
+
+    private static InputStream input(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> receiveDates(Collection<Book> books) {
+        return books.stream().map(book -> book.name + ":" + book.receiveDate).collect(toList());
+    }
+}
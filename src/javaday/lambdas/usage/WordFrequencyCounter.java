@@ -0,0 +1,200 @@
+package javaday.lambdas.usage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Counts words the same way as {@link LambdasHackingExercises#wordFrequenciesInJava8()} but for corpora
+ * far bigger than SonnetI.txt: file is split into newline aligned {@link FileChunk}s, every chunk is
+ * tokenized on its own core into its own primitive open addressing map, and chunk maps are merged at the end.
+ *
+ * Tokenizer works on raw bytes without regex or decoding: {@link LambdasHackingExercises#REGEXP} only treats
+ * [a-zA-Z0-9_] as word characters and every byte of multi byte UTF-8 sequence is above 0x7F, so splitting
+ * UTF-8 bytes on everything else gives exactly the same words.
+ *
+ * @author Oleg Tsal-Tsalko
+ */
+public class WordFrequencyCounter {
+
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final boolean[] WORD_BYTE = new boolean[256];
+
+    static {
+        for (int b = 0; b < 128; b++) {
+            WORD_BYTE[b] = Character.isLetterOrDigit(b) || b == '_';
+        }
+    }
+
+    public static Map<String, Long> wordFrequencies(Path file) throws IOException {
+        return wordFrequencies(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static Map<String, Long> wordFrequencies(Path file, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<FileChunk> chunks = FileChunk.split(channel, parallelism, MAX_CHUNK_SIZE);
+            List<WordCounts> chunkCounts = chunks.parallelStream()
+                    .map(chunk -> count(chunk.read(channel)))
+                    .collect(toList());
+
+            Map<String, Long> frequencies = new HashMap<>();
+            for (WordCounts counts : chunkCounts) {
+                counts.forEach((word, count) -> frequencies.merge(word, (long) count, Long::sum));
+            }
+            return frequencies;
+        }
+    }
+
+    static WordCounts count(byte[] bytes) {
+        WordCounts counts = new WordCounts();
+        int i = 0;
+        while (i < bytes.length) {
+            while (i < bytes.length && !WORD_BYTE[bytes[i] & 0xFF]) {
+                i++;
+            }
+            int start = i;
+            int hash = 0;
+            while (i < bytes.length && WORD_BYTE[bytes[i] & 0xFF]) {
+                hash = 31 * hash + bytes[i];
+                i++;
+            }
+            if (i > start) {
+                counts.increment(bytes, start, i - start, hash);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Open addressing String -> int map probed directly with bytes of a word, so String is only
+     * created once per distinct word of a chunk. Hash of ASCII word bytes equals {@link String#hashCode()}.
+     */
+    static class WordCounts {
+
+        @FunctionalInterface
+        interface WordCountConsumer {
+            void accept(String word, int count);
+        }
+
+        private String[] words = new String[1024];
+        private int[] counts = new int[1024];
+        private int size;
+
+        void increment(byte[] bytes, int offset, int length, int hash) {
+            int mask = words.length - 1;
+            int slot = mix(hash) & mask;
+            while (words[slot] != null) {
+                if (equals(words[slot], bytes, offset, length)) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            words[slot] = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            counts[slot] = 1;
+            if (++size > words.length / 2) {
+                rehash();
+            }
+        }
+
+        void forEach(WordCountConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] != null) {
+                    action.accept(words[i], counts[i]);
+                }
+            }
+        }
+
+        private void rehash() {
+            String[] oldWords = words;
+            int[] oldCounts = counts;
+            words = new String[oldWords.length * 2];
+            counts = new int[oldWords.length * 2];
+            int mask = words.length - 1;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] != null) {
+                    int slot = mix(oldWords[i].hashCode()) & mask;
+                    while (words[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    words[slot] = oldWords[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static boolean equals(String word, byte[] bytes, int offset, int length) {
+            if (word.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (word.charAt(i) != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    @Test
+    public void shouldCountSonnetWordsAsRegexPipeline() throws Exception {
+        Path sonnet = Paths.get("SonnetI.txt");
+        Map<String, Long> frequencies = wordFrequencies(sonnet, 3);
+
+        assertThat(frequencies, is(regexWordFrequencies(sonnet)));
+        assertThat(frequencies.get("tender"), is(2L));
+        assertThat(frequencies.get("the"), is(6L));
+        assertThat(frequencies.containsKey("lambda"), is(false));
+    }
+
+    @Test
+    public void shouldSplitOnNonAsciiAndPunctuationAcrossManyChunks() throws Exception {
+        Random random = new Random(7);
+        String[] vocabulary = {"alpha", "Beta", "gamma_1", "na\u00efve", "\u00fcber", "x", "42", "caf\u00e9", "don't"};
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 5000; line++) {
+            for (int word = 0; word < 1 + random.nextInt(12); word++) {
+                text.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextBoolean() ? " " : ", ");
+            }
+            text.append(line % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = Files.createTempFile("words", ".txt");
+        try {
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+            assertThat(wordFrequencies(file, 7), is(regexWordFrequencies(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Map<String, Long> regexWordFrequencies(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines
+                    .flatMap(line -> Stream.of(line.split(LambdasHackingExercises.REGEXP)))
+                    .filter(word -> word.length() > 0)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        }
+    }
+}